@@ -0,0 +1,226 @@
+import javax.sound.sampled.*;
+
+import java.util.Arrays;
+
+// Mixes any number of overlapping sound effects into a single SourceDataLine.
+// Sounds are registered once as 16-bit PCM; play() only queues a trigger, and
+// a dedicated thread mixes the active voices in small chunks and writes them
+// to the line. The line buffer size is configurable so latency can be traded
+// against dropouts, and the engine measures both.
+final class AudioEngine implements Runnable {
+    static final float SAMPLE_RATE = 44100f;
+    private static final int MAX_PENDING = 64;
+    private static final LatencyHistogram TRIGGER_LATENCY = Metrics.histogram("sound.trigger_latency");
+
+    private final AudioFormat format;
+    private final int channels;
+    private final int bufferFrames;
+    private final int chunkFrames;
+    private final int maxVoices;
+
+    // Registered sounds, interleaved 16-bit samples; copy-on-write
+    private volatile short[][] sounds = new short[0][];
+
+    // Triggers queued by play() and drained by the mixer thread
+    private final Object pendingLock = new Object();
+    private final int[] pendingSounds = new int[MAX_PENDING];
+    private final long[] pendingNanos = new long[MAX_PENDING];
+    private int pendingCount;
+
+    // Voices, owned by the mixer thread
+    private final short[][] voiceSamples;
+    private final int[] voicePositions;
+    private final long[] voiceStarted;
+    private int voiceCount;
+
+    private SourceDataLine line;
+    private Thread mixer;
+    private volatile boolean running;
+
+    // Latency from play() to the first sample reaching the line's output,
+    // estimated from the frames still queued ahead of it
+    private volatile long lastLatencyNanos;
+    private volatile long maxLatencyNanos;
+    private volatile long totalLatencyNanos;
+    private volatile long latencySamples;
+    private volatile long underruns;
+    private volatile long droppedTriggers;
+
+    AudioEngine(int channels, int bufferMillis, int maxVoices) {
+        this.channels = channels;
+        this.format = new AudioFormat(SAMPLE_RATE, 16, channels, true, false);
+        this.bufferFrames = Math.max(64, (int) (SAMPLE_RATE * bufferMillis / 1000));
+        this.chunkFrames = Math.max(32, bufferFrames / 4);
+        this.maxVoices = maxVoices;
+        this.voiceSamples = new short[maxVoices][];
+        this.voicePositions = new int[maxVoices];
+        this.voiceStarted = new long[maxVoices];
+    }
+
+    AudioFormat getFormat() { return format; }
+    int getChannels() { return channels; }
+
+    // Register PCM in this engine's format (interleaved, 16-bit) and return its id
+    synchronized int register(short[] samples) {
+        short[][] current = sounds;
+        short[][] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = samples;
+        sounds = next;
+        return current.length;
+    }
+
+    // Open the line and start mixing. Returns false if no line is available,
+    // in which case play() does nothing.
+    boolean start() {
+        try {
+            line = AudioSystem.getSourceDataLine(format);
+            line.open(format, bufferFrames * format.getFrameSize());
+            line.start();
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            System.out.println("Error opening audio line: " + e.getMessage());
+            line = null;
+            return false;
+        }
+        running = true;
+        mixer = new Thread(this, "candy-audio-mixer");
+        mixer.setDaemon(true);
+        mixer.setPriority(Thread.MAX_PRIORITY);
+        mixer.start();
+        return true;
+    }
+
+    void close() {
+        running = false;
+        if (mixer != null) {
+            mixer.interrupt();
+        }
+    }
+
+    // Queue a sound. Never blocks on the audio line and does not allocate.
+    void play(int sound) {
+        if (!running || sound < 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        synchronized (pendingLock) {
+            if (pendingCount == MAX_PENDING) {
+                droppedTriggers++;
+                return;
+            }
+            pendingSounds[pendingCount] = sound;
+            pendingNanos[pendingCount] = now;
+            pendingCount++;
+        }
+    }
+
+    @Override
+    public void run() {
+        int frameSize = format.getFrameSize();
+        int[] mix = new int[chunkFrames * channels];
+        byte[] out = new byte[chunkFrames * frameSize];
+        int[] drainedSounds = new int[MAX_PENDING];
+        long[] drainedNanos = new long[MAX_PENDING];
+        boolean primed = false;
+
+        try {
+            while (running) {
+                int drained;
+                synchronized (pendingLock) {
+                    drained = pendingCount;
+                    System.arraycopy(pendingSounds, 0, drainedSounds, 0, drained);
+                    System.arraycopy(pendingNanos, 0, drainedNanos, 0, drained);
+                    pendingCount = 0;
+                }
+
+                if (drained > 0) {
+                    short[][] registered = sounds;
+                    // Everything still queued in the line plays before the new voices
+                    int queuedFrames = (line.getBufferSize() - line.available()) / frameSize;
+                    long now = System.nanoTime();
+                    long queuedNanos = queuedFrames * 1_000_000_000L / (long) SAMPLE_RATE;
+                    for (int i = 0; i < drained; i++) {
+                        startVoice(registered[drainedSounds[i]], now);
+                        recordLatency(drainedSounds[i], now - drainedNanos[i] + queuedNanos);
+                    }
+                }
+
+                mixChunk(mix);
+                for (int i = 0, b = 0; i < mix.length; i++) {
+                    int sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, mix[i]));
+                    out[b++] = (byte) sample;
+                    out[b++] = (byte) (sample >> 8);
+                }
+
+                // A completely empty line means the previous chunk arrived late
+                if (primed && line.available() >= line.getBufferSize()) {
+                    underruns++;
+                }
+                line.write(out, 0, out.length);
+                primed = true;
+            }
+        } finally {
+            line.stop();
+            line.close();
+        }
+    }
+
+    private void startVoice(short[] samples, long now) {
+        int slot = voiceCount;
+        if (slot == maxVoices) {
+            // Steal the oldest voice
+            slot = 0;
+            for (int v = 1; v < voiceCount; v++) {
+                if (voiceStarted[v] < voiceStarted[slot]) {
+                    slot = v;
+                }
+            }
+        } else {
+            voiceCount++;
+        }
+        voiceSamples[slot] = samples;
+        voicePositions[slot] = 0;
+        voiceStarted[slot] = now;
+    }
+
+    private void mixChunk(int[] mix) {
+        Arrays.fill(mix, 0);
+        for (int v = 0; v < voiceCount; ) {
+            short[] samples = voiceSamples[v];
+            int position = voicePositions[v];
+            int count = Math.min(mix.length, samples.length - position);
+            for (int i = 0; i < count; i++) {
+                mix[i] += samples[position + i];
+            }
+            position += count;
+            if (position >= samples.length) {
+                // Finished: move the last voice into this slot
+                voiceCount--;
+                voiceSamples[v] = voiceSamples[voiceCount];
+                voicePositions[v] = voicePositions[voiceCount];
+                voiceStarted[v] = voiceStarted[voiceCount];
+                voiceSamples[voiceCount] = null;
+            } else {
+                voicePositions[v] = position;
+                v++;
+            }
+        }
+    }
+
+    private void recordLatency(int sound, long nanos) {
+        TRIGGER_LATENCY.record(nanos);
+        FlightEvents.soundTrigger(sound, nanos);
+        lastLatencyNanos = nanos;
+        if (nanos > maxLatencyNanos) {
+            maxLatencyNanos = nanos;
+        }
+        totalLatencyNanos += nanos;
+        latencySamples++;
+    }
+
+    int getBufferMillis() { return (int) (bufferFrames * 1000L / (long) SAMPLE_RATE); }
+    long getLastLatencyNanos() { return lastLatencyNanos; }
+    long getMaxLatencyNanos() { return maxLatencyNanos; }
+    long getAverageLatencyNanos() { return latencySamples == 0 ? 0 : totalLatencyNanos / latencySamples; }
+    long getUnderruns() { return underruns; }
+    long getDroppedTriggers() { return droppedTriggers; }
+}
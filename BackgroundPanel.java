@@ -0,0 +1,118 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+// Candy background for the content pane. The gradient and decorative circles
+// are rendered once per window size into a cached image, and each repaint
+// only copies the dirty clip region back out of it. Because the circles are
+// seeded they stay in place instead of jumping around on every repaint.
+// The circles are left out when a RenderQualityGovernor is below high quality.
+final class BackgroundPanel extends JPanel {
+    private static final long DECORATION_SEED = 0xCA11D7L;
+    private static final LatencyHistogram PAINT_TIMES = Metrics.histogram("paint.background");
+
+    private BufferedImage cache;
+    private int cacheWidth;
+    private int cacheHeight;
+    private double cacheScale;
+    private boolean cacheDecorated;
+    private RenderQualityGovernor governor;
+    private Runnable firstPaintListener;
+
+    BackgroundPanel() {
+        setOpaque(true);
+    }
+
+    void setQualityGovernor(RenderQualityGovernor governor) {
+        this.governor = governor;
+    }
+
+    // Called once, after the first time the background reaches the screen
+    void setFirstPaintListener(Runnable listener) {
+        firstPaintListener = listener;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        long paintStart = System.nanoTime();
+        Graphics2D g2d = (Graphics2D) g;
+        int width = getWidth();
+        int height = getHeight();
+        double scale = g2d.getTransform().getScaleX();
+        boolean decorated = governor == null || governor.isDecorated();
+        if (cache == null || width != cacheWidth || height != cacheHeight || scale != cacheScale
+                || decorated != cacheDecorated) {
+            rebuild(g2d.getDeviceConfiguration(), width, height, scale, decorated);
+        }
+
+        // Only the clip is actually blitted, so a label or card repaint
+        // costs a copy of its own rectangle
+        g2d.drawImage(cache, 0, 0, width, height, null);
+        long paintNanos = System.nanoTime() - paintStart;
+        PAINT_TIMES.record(paintNanos);
+        FlightEvents.paint("background", paintNanos);
+        if (governor != null) {
+            governor.record(paintNanos);
+        }
+
+        if (firstPaintListener != null) {
+            Runnable listener = firstPaintListener;
+            firstPaintListener = null;
+            listener.run();
+        }
+    }
+
+    private void rebuild(GraphicsConfiguration gc, int width, int height, double scale, boolean decorated) {
+        if (cache != null) {
+            cache.flush();
+        }
+        int pixelWidth = Math.max(1, (int) Math.ceil(width * scale));
+        int pixelHeight = Math.max(1, (int) Math.ceil(height * scale));
+        cache = gc != null
+            ? gc.createCompatibleImage(pixelWidth, pixelHeight, Transparency.OPAQUE)
+            : new BufferedImage(pixelWidth, pixelHeight, BufferedImage.TYPE_INT_RGB);
+        cacheWidth = width;
+        cacheHeight = height;
+        cacheScale = scale;
+        cacheDecorated = decorated;
+
+        Graphics2D g2d = cache.createGraphics();
+        g2d.scale(scale, scale);
+        paintBackground(g2d, width, height, decorated);
+        g2d.dispose();
+    }
+
+    static void paintBackground(Graphics2D g2d, int width, int height) {
+        paintBackground(g2d, width, height, true);
+    }
+
+    static void paintBackground(Graphics2D g2d, int width, int height, boolean decorated) {
+        Color background = CandyMemoryGame.BACKGROUND_COLOR;
+        Color accent = CandyMemoryGame.ACCENT_COLOR;
+
+        GradientPaint gradient = new GradientPaint(
+            0, 0, background,
+            width, height, new Color(background.getRed() - 20,
+                                     background.getGreen() - 20,
+                                     background.getBlue() - 20));
+        g2d.setPaint(gradient);
+        g2d.fillRect(0, 0, width, height);
+        if (!decorated) {
+            return;
+        }
+
+        // Add some candy-like decorations
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setColor(new Color(accent.getRed(), accent.getGreen(), accent.getBlue(), 40));
+
+        // Draw some decorative circles
+        Random random = new Random(DECORATION_SEED);
+        for (int i = 0; i < 20; i++) {
+            int size = 20 + random.nextInt(60);
+            int x = (int) (random.nextDouble() * width);
+            int y = (int) (random.nextDouble() * height);
+            g2d.fillOval(x, y, size, size);
+        }
+    }
+}
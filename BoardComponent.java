@@ -0,0 +1,404 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+
+// Draws the whole card grid as a single component. Hit-testing is plain
+// arithmetic on the cell pitch, and painting walks only the cells that
+// intersect the clip, so flipping one card on a 100x100 board costs the same
+// as on a 4x4 one. Large boards scroll inside a JScrollPane; small ones
+// stretch to fill the window like the old GridLayout did.
+//
+// Flips are animated by squeezing the old side to nothing and opening the
+// new side out again, using the cached full-size sprites. A frame timer on
+// the game loop drives the animation at -Dcandy.fps (60 by default): each
+// frame paints just the animating cells immediately, and when the EDT falls
+// behind it skips the missed frames rather than queueing them, since the
+// flip progress comes from the clock anyway. Frame intervals and frame paint
+// times are kept in histograms for checking the frame rate on slow machines.
+//
+// Boards with generated candies have their faces rendered in the background
+// whenever the card size changes, one prefetch at a time, so a resize storm
+// only renders the sizes it settles on.
+final class BoardComponent extends JComponent implements Scrollable {
+    private static final int MIN_CELL_SIZE = 28;
+    private static final int PREFERRED_CELL_SIZE = 100;
+    private static final long FLIP_NANOS = Integer.getInteger("candy.flipMillis", 160) * 1_000_000L;
+    private static final long FRAME_PERIOD_NANOS = GameLoop.SECOND_NANOS / Math.max(1, Integer.getInteger("candy.fps", 60));
+
+    // The board as last shown; replaced by show() on the EDT
+    private BoardState state;
+    private final int candyCount;
+    private final CardSpriteCache sprites;
+    private final IntConsumer clickHandler;
+    private final int gap;
+
+    // Cell geometry, recomputed when the component is resized
+    private int cellWidth;
+    private int cellHeight;
+    private int originX;
+    private int originY;
+    private int layoutWidth = -1;
+    private int layoutHeight = -1;
+
+    private int pressedCell = -1;
+
+    // Card size the background face prefetch should render for
+    private final AtomicBoolean prefetching = new AtomicBoolean();
+    private volatile long prefetchSize;
+
+    // Flip animations: start time per cell (0 when still) and the list of animating cells
+    private final GameLoop gameLoop;
+    private final int frameTimer;
+    private final long[] flipStart;
+    private final int[] animating;
+    private int animatingCount;
+    private long frameDeadline;
+    private long lastFrameNanos;
+
+    // Paint and input latency, shared through the metrics registry
+    private static final LatencyHistogram PAINT_TIMES = Metrics.histogram("paint.board");
+    private static final LatencyHistogram CLICK_TO_PAINT = Metrics.histogram("click.to_paint");
+    private long inputNanos;
+
+    // Frame metrics
+    private final LatencyHistogram frameIntervals = new LatencyHistogram();
+    private final LatencyHistogram framePaintTimes = new LatencyHistogram();
+    private long skippedFrames;
+
+    // Told how long each frame and each full paint took; null if nothing adapts
+    private RenderQualityGovernor governor;
+
+    BoardComponent(BoardState state, CardSpriteCache sprites, GameLoop gameLoop, IntConsumer clickHandler) {
+        this.state = state;
+        this.candyCount = state.getCandyCount();
+        this.sprites = sprites;
+        this.gameLoop = gameLoop;
+        this.clickHandler = clickHandler;
+        this.flipStart = new long[state.getCardCount()];
+        this.animating = new int[state.getCardCount()];
+        this.frameTimer = gameLoop.addTimer(this::onFrame);
+        this.gap = state.getRows() <= 8 && state.getCols() <= 8 ? 10 : 4;
+        setOpaque(false);
+        setCursor(new Cursor(Cursor.HAND_CURSOR));
+
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                if (SwingUtilities.isLeftMouseButton(e)) {
+                    pressedCell = cellAt(e.getX(), e.getY());
+                }
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                // Behave like a button: the press and release must land on the same card
+                int cell = cellAt(e.getX(), e.getY());
+                if (cell != -1 && cell == pressedCell) {
+                    clickHandler.accept(cell);
+                }
+                pressedCell = -1;
+            }
+        };
+        addMouseListener(mouse);
+    }
+
+    private void updateLayout() {
+        int width = getWidth();
+        int height = getHeight();
+        if (width == layoutWidth && height == layoutHeight) {
+            return;
+        }
+        layoutWidth = width;
+        layoutHeight = height;
+        int cols = state.getCols();
+        int rows = state.getRows();
+        cellWidth = Math.max(MIN_CELL_SIZE, (width - gap * (cols - 1)) / cols);
+        cellHeight = Math.max(MIN_CELL_SIZE, (height - gap * (rows - 1)) / rows);
+        originX = Math.max(0, (width - (cols * cellWidth + gap * (cols - 1))) / 2);
+        originY = Math.max(0, (height - (rows * cellHeight + gap * (rows - 1))) / 2);
+        requestPrefetch();
+    }
+
+    private void requestPrefetch() {
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        if (gc == null) {
+            return;
+        }
+        int scale = (int) Math.round(gc.getDefaultTransform().getScaleX() * 100);
+        prefetchSize = (long) scale << 40 | (long) cellWidth << 20 | cellHeight;
+        if (prefetching.compareAndSet(false, true)) {
+            ForkJoinPool.commonPool().execute(() -> prefetchFaces(gc));
+        }
+    }
+
+    // Keep going until the size stops changing under us
+    private void prefetchFaces(GraphicsConfiguration gc) {
+        long size;
+        do {
+            do {
+                size = prefetchSize;
+                sprites.prefetchFaces(gc, 0, candyCount, (int) (size >>> 20) & 0xFFFFF,
+                    (int) size & 0xFFFFF, (size >>> 40) / 100.0);
+            } while (size != prefetchSize);
+            prefetching.set(false);
+        } while (size != prefetchSize && prefetching.compareAndSet(false, true));
+    }
+
+    // Cell under a point, or -1 for a gap or outside the board
+    int cellAt(int x, int y) {
+        updateLayout();
+        int dx = x - originX;
+        int dy = y - originY;
+        if (dx < 0 || dy < 0) {
+            return -1;
+        }
+        int col = dx / (cellWidth + gap);
+        int row = dy / (cellHeight + gap);
+        if (col >= state.getCols() || row >= state.getRows()
+            || dx - col * (cellWidth + gap) >= cellWidth
+            || dy - row * (cellHeight + gap) >= cellHeight) {
+            return -1;
+        }
+        return row * state.getCols() + col;
+    }
+
+    // Schedule a repaint of a single card
+    void repaintCell(int cell) {
+        updateLayout();
+        int col = cell % state.getCols();
+        int row = cell / state.getCols();
+        repaint(originX + col * (cellWidth + gap), originY + row * (cellHeight + gap), cellWidth, cellHeight);
+    }
+
+    // Note when an input was handled; the next paint records the input-to-paint latency
+    void markInput(long nanos) {
+        if (inputNanos == 0) {
+            inputNanos = nanos;
+        }
+    }
+
+    // Show a newer snapshot of the game. Cards that turned over since the
+    // last one are animated; a new deal repaints the whole board.
+    void show(BoardState next) {
+        BoardState previous = state;
+        state = next;
+        if (next.getDeal() != previous.getDeal()) {
+            stopAnimations();
+            return;
+        }
+        int words = (next.getCardCount() + 63) >>> 6;
+        for (int word = 0; word < words; word++) {
+            long changed = previous.getRevealedWord(word) ^ next.getRevealedWord(word);
+            while (changed != 0) {
+                flipCell((word << 6) + Long.numberOfTrailingZeros(changed));
+                changed &= changed - 1;
+            }
+        }
+    }
+
+    void setQualityGovernor(RenderQualityGovernor governor) {
+        this.governor = governor;
+    }
+
+    // Animate a card turning over to its current side in the shown state
+    void flipCell(int cell) {
+        if (FLIP_NANOS <= 0 || governor != null && governor.getLevel() == RenderQualityGovernor.LOW) {
+            repaintCell(cell);
+            return;
+        }
+        long now = System.nanoTime();
+        if (flipStart[cell] == 0) {
+            animating[animatingCount++] = cell;
+        }
+        flipStart[cell] = now;
+        if (!gameLoop.isScheduled(frameTimer)) {
+            // Start pacing from now
+            frameDeadline = now;
+            lastFrameNanos = 0;
+            onFrame();
+        }
+    }
+
+    // Stop all animations, e.g. when a new board is dealt
+    void stopAnimations() {
+        for (int i = 0; i < animatingCount; i++) {
+            flipStart[animating[i]] = 0;
+        }
+        animatingCount = 0;
+        gameLoop.cancel(frameTimer);
+        repaint();
+    }
+
+    // One animation frame, on the EDT
+    private void onFrame() {
+        long now = System.nanoTime();
+        if (lastFrameNanos != 0) {
+            frameIntervals.record(now - lastFrameNanos);
+        }
+        lastFrameNanos = now;
+
+        // Paint only the animating cells, and drop the ones that finished
+        updateLayout();
+        if (governor != null) {
+            governor.beginFrame();
+        }
+        int kept = 0;
+        for (int i = 0; i < animatingCount; i++) {
+            int cell = animating[i];
+            if (now - flipStart[cell] >= FLIP_NANOS) {
+                flipStart[cell] = 0;
+            } else {
+                animating[kept++] = cell;
+            }
+            int col = cell % state.getCols();
+            int row = cell / state.getCols();
+            paintImmediately(originX + col * (cellWidth + gap), originY + row * (cellHeight + gap), cellWidth, cellHeight);
+        }
+        animatingCount = kept;
+        long frameNanos = System.nanoTime() - now;
+        framePaintTimes.record(frameNanos);
+        if (governor != null) {
+            governor.endFrame(frameNanos);
+        }
+
+        if (animatingCount == 0) {
+            return;
+        }
+        // Next frame on the fixed cadence; if we are already past it, skip
+        // ahead instead of trying to catch up
+        frameDeadline += FRAME_PERIOD_NANOS;
+        long after = System.nanoTime();
+        if (after - frameDeadline >= 0) {
+            long behind = (after - frameDeadline) / FRAME_PERIOD_NANOS + 1;
+            skippedFrames += behind;
+            frameDeadline += behind * FRAME_PERIOD_NANOS;
+        }
+        gameLoop.scheduleAt(frameTimer, frameDeadline);
+    }
+
+    LatencyHistogram getFrameIntervals() { return frameIntervals; }
+    LatencyHistogram getFramePaintTimes() { return framePaintTimes; }
+    long getSkippedFrames() { return skippedFrames; }
+
+    String frameSummary() {
+        return String.format("Frames at %d fps target: interval %s; paint %s; skipped %d",
+            GameLoop.SECOND_NANOS / FRAME_PERIOD_NANOS, frameIntervals.summary("ms", 1e6),
+            framePaintTimes.summary("ms", 1e6), skippedFrames);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        long paintStart = System.nanoTime();
+        updateLayout();
+        Graphics2D g2d = (Graphics2D) g;
+        Rectangle clip = g2d.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+
+        // Only visit the rows and columns that intersect the dirty region
+        int pitchX = cellWidth + gap;
+        int pitchY = cellHeight + gap;
+        int firstCol = Math.max(0, (clip.x - originX) / pitchX);
+        int firstRow = Math.max(0, (clip.y - originY) / pitchY);
+        int lastCol = Math.min(state.getCols() - 1, (clip.x + clip.width - originX) / pitchX);
+        int lastRow = Math.min(state.getRows() - 1, (clip.y + clip.height - originY) / pitchY);
+
+        long now = animatingCount > 0 ? System.nanoTime() : 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            int y = originY + row * pitchY;
+            for (int col = firstCol; col <= lastCol; col++) {
+                int x = originX + col * pitchX;
+                int cell = row * state.getCols() + col;
+                if (flipStart[cell] != 0) {
+                    paintFlippingCard(g2d, cell, now, x, y);
+                } else {
+                    paintCard(g2d, state.isRevealed(cell), state.getCandy(cell), state.getNumber(cell), sprites,
+                        x, y, cellWidth, cellHeight);
+                }
+            }
+        }
+
+        long paintEnd = System.nanoTime();
+        PAINT_TIMES.record(paintEnd - paintStart);
+        FlightEvents.paint("board", paintEnd - paintStart);
+        // Cell repaints within a frame are counted as part of the frame
+        if (governor != null) {
+            governor.record(paintEnd - paintStart);
+        }
+        if (inputNanos != 0) {
+            CLICK_TO_PAINT.record(paintEnd - inputNanos);
+            inputNanos = 0;
+        }
+    }
+
+    // First half of a flip shows the old side closing, second half the new side opening
+    private void paintFlippingCard(Graphics2D g2d, int cell, long now, int x, int y) {
+        float progress = Math.min(1f, (float) (now - flipStart[cell]) / FLIP_NANOS);
+        boolean faceUp = state.isRevealed(cell);
+        if (progress < 0.5f) {
+            faceUp = !faceUp;
+        }
+        int id = faceUp ? state.getCandy(cell) : state.getNumber(cell);
+        sprites.drawCard(g2d, faceUp, id, x, y, cellWidth, cellHeight, Math.abs(1f - 2f * progress));
+    }
+
+    // Paint one card; shared with the benchmarks
+    static void paintCard(Graphics2D g2d, boolean revealed, int candy, int number, CardSpriteCache sprites,
+                          int x, int y, int width, int height) {
+        if (revealed) {
+            // Card front - show candy image
+            sprites.drawCard(g2d, true, candy, x, y, width, height);
+        } else {
+            // Card back - show number
+            sprites.drawCard(g2d, false, number, x, y, width, height);
+        }
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        int cols = state.getCols();
+        int rows = state.getRows();
+        int cell = cols <= 8 && rows <= 8 ? PREFERRED_CELL_SIZE : MIN_CELL_SIZE;
+        return new Dimension(cols * cell + gap * (cols - 1), rows * cell + gap * (rows - 1));
+    }
+
+    @Override
+    public Dimension getMinimumSize() {
+        int cols = state.getCols();
+        int rows = state.getRows();
+        return new Dimension(cols * MIN_CELL_SIZE + gap * (cols - 1), rows * MIN_CELL_SIZE + gap * (rows - 1));
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return (orientation == SwingConstants.VERTICAL ? cellHeight : cellWidth) + gap;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+    }
+
+    // Stretch to the viewport until the cards would get smaller than the minimum, then scroll
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        Container parent = getParent();
+        return parent instanceof JViewport && parent.getWidth() >= getMinimumSize().width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        Container parent = getParent();
+        return parent instanceof JViewport && parent.getHeight() >= getMinimumSize().height;
+    }
+}
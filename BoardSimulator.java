@@ -0,0 +1,342 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Monte Carlo difficulty estimate for a board size and time limit. Bots play
+// games against MemoryGameEngine, so the match rules are the real ones, on a
+// simulated clock: every click costs a randomised think time and every
+// mismatch costs the one second flip-back. Three memory models are played:
+//   perfect  remembers every card it has seen
+//   limited  remembers only the last few cards it saw
+//   random   remembers nothing and clicks unmatched cards at random
+// Games are split across cores with fork/join. Each leaf task reuses one
+// engine and one set of primitive arrays for all of its games, so the inner
+// loop does not allocate.
+//
+// Every game is played to the end (or to a cap of several times the limit)
+// and its clear time recorded, so one run answers both "what is the win rate
+// at this limit" and "what limit gives a 90% win rate".
+final class BoardSimulator {
+    static final int PERFECT = 0;
+    static final int LIMITED = 1;
+    static final int RANDOM = 2;
+    private static final String[] MODEL_NAMES = {"perfect", "limited", "random"};
+
+    private static final int FLIP_BACK_MILLIS = 1000;
+    private static final int CAP_FACTOR = 8;
+    private static final int GAMES_PER_TASK = 2048;
+
+    private final int rows;
+    private final int cols;
+    private final int durationSeconds;
+    private final int clickMillis;
+    private final int recall;
+    private final long capMillis;
+
+    BoardSimulator(int rows, int cols, int durationSeconds, int clickMillis, int recall) {
+        this.rows = rows;
+        this.cols = cols;
+        this.durationSeconds = durationSeconds;
+        this.clickMillis = clickMillis;
+        this.recall = recall;
+        this.capMillis = (long) durationSeconds * 1000 * CAP_FACTOR;
+    }
+
+    // Aggregated outcome of a batch of games
+    static final class Result {
+        final LatencyHistogram moves = new LatencyHistogram();
+        final LatencyHistogram clearMillis = new LatencyHistogram(); // capMillis + 1 when unfinished
+        long games;
+        long wins;
+        long unfinished;
+
+        void add(Result other) {
+            moves.add(other.moves);
+            clearMillis.add(other.clearMillis);
+            games += other.games;
+            wins += other.wins;
+            unfinished += other.unfinished;
+        }
+
+        double getWinRate() {
+            return games == 0 ? 0 : (double) wins / games;
+        }
+    }
+
+    // Play games [0, games) for one memory model. The same seed and game
+    // count always deal the same boards and give the same result.
+    Result run(int model, long games, long seed) {
+        return ForkJoinPool.commonPool().invoke(new SimulationTask(model, seed, 0, games));
+    }
+
+    private final class SimulationTask extends RecursiveTask<Result> {
+        private final int model;
+        private final long seed;
+        private final long from;
+        private final long to;
+
+        SimulationTask(int model, long seed, long from, long to) {
+            this.model = model;
+            this.seed = seed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Result compute() {
+            if (to - from <= GAMES_PER_TASK) {
+                Bot bot = new Bot(model, mix(seed ^ mix(from)));
+                Result result = new Result();
+                for (long game = from; game < to; game++) {
+                    long millis = bot.play(mix(seed + game));
+                    result.games++;
+                    result.moves.record(bot.moves);
+                    if (millis < 0) {
+                        result.unfinished++;
+                        result.clearMillis.record(capMillis + 1);
+                    } else {
+                        result.clearMillis.record(millis);
+                        if (millis < durationSeconds * 1000L) {
+                            result.wins++;
+                        }
+                    }
+                }
+                return result;
+            }
+            long middle = (from + to) >>> 1;
+            SimulationTask left = new SimulationTask(model, seed, from, middle);
+            left.fork();
+            Result result = new SimulationTask(model, seed, middle, to).compute();
+            result.add(left.join());
+            return result;
+        }
+    }
+
+    // One player. All state is primitive arrays sized once for the board.
+    private final class Bot {
+        private final int model;
+        private final SplittableRandom random;
+        private final MemoryGameEngine engine;
+        private final int cardCount;
+
+        // Remembered cells: one unpaired cell per candy, plus a queue of
+        // known pairs that have not been collected yet
+        private final int[] pending;
+        private final int[] pairQueue;
+        private int queueHead;
+        private int queueSize;
+        private int knownFirst;
+        private int knownSecond;
+
+        // When each cell was last seen, counted in observations, for limited recall
+        private final int[] seenAt;
+        private int observations;
+
+        // Cells still worth turning over: unseen cells for the perfect bot,
+        // unmatched cells for the others. Swap-remove with an index per cell.
+        private final int[] pool;
+        private final int[] poolIndex;
+        private int poolSize;
+
+        int moves;
+
+        Bot(int model, long seed) {
+            this.model = model;
+            this.random = new SplittableRandom(seed);
+            this.engine = new MemoryGameEngine(rows, cols,
+                MemoryGameEngine.candyCountFor(rows, cols, CandyMemoryGame.CANDY_COUNT), durationSeconds);
+            this.cardCount = engine.getCardCount();
+            this.pending = new int[engine.getCandyCount()];
+            this.pairQueue = new int[2 * cardCount];
+            this.seenAt = new int[cardCount];
+            this.pool = new int[cardCount];
+            this.poolIndex = new int[cardCount];
+        }
+
+        // Play one board to the end. Returns the simulated clear time in
+        // milliseconds, or -1 if the bot had not finished by the cap.
+        long play(long boardSeed) {
+            engine.newGame(boardSeed);
+            Arrays.fill(pending, -1);
+            Arrays.fill(seenAt, Integer.MIN_VALUE / 2);
+            queueHead = 0;
+            queueSize = 0;
+            observations = 0;
+            for (int i = 0; i < cardCount; i++) {
+                pool[i] = i;
+                poolIndex[i] = i;
+            }
+            poolSize = cardCount;
+            moves = 0;
+
+            long clock = 0;
+            while (clock <= capMillis) {
+                int first;
+                int second;
+                if (takeKnownPair()) {
+                    first = knownFirst;
+                    second = knownSecond;
+                    clock += thinkTime();
+                    engine.click(first);
+                } else {
+                    first = pickUnknown(-1);
+                    clock += thinkTime();
+                    engine.click(first);
+                    int candy = engine.getCandy(first);
+                    int partner = pending[candy];
+                    if (model != RANDOM && partner >= 0 && partner != first && isRemembered(partner)) {
+                        second = partner;
+                        pending[candy] = -1;
+                    } else {
+                        observe(first);
+                        second = pickUnknown(first);
+                    }
+                }
+
+                clock += thinkTime();
+                int result = engine.click(second);
+                moves++;
+                if (result == MemoryGameEngine.CLICK_WIN) {
+                    return clock;
+                } else if (result == MemoryGameEngine.CLICK_MATCH) {
+                    matched(first);
+                    matched(second);
+                } else {
+                    observe(second);
+                    clock += FLIP_BACK_MILLIS;
+                    engine.flipBack();
+                }
+            }
+            return -1;
+        }
+
+        // Dequeue the next known pair that is still unmatched and remembered
+        private boolean takeKnownPair() {
+            while (queueSize > 0) {
+                knownFirst = pairQueue[queueHead];
+                knownSecond = pairQueue[queueHead + 1];
+                queueHead = (queueHead + 2) % pairQueue.length;
+                queueSize -= 2;
+                if (!engine.isMatched(knownFirst) && !engine.isMatched(knownSecond)
+                    && isRemembered(knownFirst) && isRemembered(knownSecond)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void observe(int cell) {
+            if (model == RANDOM) {
+                return;
+            }
+            seenAt[cell] = observations++;
+            if (model == PERFECT) {
+                removeFromPool(cell);
+            }
+            int candy = engine.getCandy(cell);
+            int partner = pending[candy];
+            if (partner >= 0 && partner != cell && isRemembered(partner) && !engine.isMatched(partner)) {
+                if (queueSize == pairQueue.length) {
+                    // Only stale pairs can fill the queue; forget the oldest
+                    queueHead = (queueHead + 2) % pairQueue.length;
+                    queueSize -= 2;
+                }
+                int tail = (queueHead + queueSize) % pairQueue.length;
+                pairQueue[tail] = partner;
+                pairQueue[tail + 1] = cell;
+                queueSize += 2;
+                pending[candy] = -1;
+            } else {
+                pending[candy] = cell;
+            }
+        }
+
+        private void matched(int cell) {
+            int candy = engine.getCandy(cell);
+            if (pending[candy] == cell) {
+                pending[candy] = -1;
+            }
+            removeFromPool(cell);
+        }
+
+        private boolean isRemembered(int cell) {
+            return model == PERFECT || observations - seenAt[cell] <= recall;
+        }
+
+        // A random card to turn over that is not excluded, preferring ones
+        // the limited bot does not currently remember
+        private int pickUnknown(int exclude) {
+            for (int attempt = 0; ; attempt++) {
+                int cell = pool[random.nextInt(poolSize)];
+                if (cell == exclude) {
+                    continue;
+                }
+                if (model == LIMITED && attempt < 8 && (isRemembered(cell) || engine.isRevealed(cell))) {
+                    continue;
+                }
+                return cell;
+            }
+        }
+
+        private void removeFromPool(int cell) {
+            int index = poolIndex[cell];
+            if (index < 0) {
+                return;
+            }
+            int last = pool[--poolSize];
+            pool[index] = last;
+            poolIndex[last] = index;
+            poolIndex[cell] = -1;
+        }
+
+        // Uniform between half and one and a half times the mean click time
+        private int thinkTime() {
+            return clickMillis / 2 + random.nextInt(clickMillis + 1);
+        }
+    }
+
+    // SplitMix64 finaliser, to turn game numbers into well spread board seeds
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private void report(int model, Result result, double seconds) {
+        System.out.println(String.format("%-8s win %5.1f%% at %ds | moves p50 %d p90 %d p99 %d | %d games in %.1f s",
+            MODEL_NAMES[model], result.getWinRate() * 100, durationSeconds,
+            result.moves.getPercentile(50), result.moves.getPercentile(90), result.moves.getPercentile(99),
+            result.games, seconds));
+        System.out.println(String.format("%-8s limit for 50%% wins %s, 90%% %s, 99%% %s", "",
+            clearTime(result, 50), clearTime(result, 90), clearTime(result, 99)));
+    }
+
+    // Clear time at a percentile, rounded up to whole seconds like the countdown
+    private String clearTime(Result result, double percentile) {
+        long millis = result.clearMillis.getPercentile(percentile);
+        if (millis > capMillis) {
+            return ">" + capMillis / 1000 + "s";
+        }
+        return (millis + 999) / 1000 + "s";
+    }
+
+    // Usage: --simulate [games] [rows cols] [seconds] [click millis] [recall]
+    static void main(String[] args) {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        int rows = args.length > 2 ? Integer.parseInt(args[1]) : 4;
+        int cols = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 40;
+        int clickMillis = args.length > 4 ? Integer.parseInt(args[4]) : 700;
+        int recall = args.length > 5 ? Integer.parseInt(args[5]) : 6;
+
+        BoardSimulator simulator = new BoardSimulator(rows, cols, seconds, clickMillis, recall);
+        System.out.println(String.format("%dx%d board, %d s limit, %d ms per click, limited recall %d cards, %d threads",
+            rows, cols, seconds, clickMillis, recall, ForkJoinPool.getCommonPoolParallelism()));
+        for (int model = PERFECT; model <= RANDOM; model++) {
+            long start = System.nanoTime();
+            Result result = simulator.run(model, games, 0x5EEDL);
+            simulator.report(model, result, (System.nanoTime() - start) / 1e9);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+// An immutable picture of a game, published by GameLogic after every change
+// so that other threads (the Swing view, bots, metrics, spectators) can read
+// a consistent board without locks. The deal (candy and number per cell)
+// never changes during a game, so snapshots of the same deal share those
+// arrays and each new snapshot only copies the revealed and matched bitsets:
+// two bits per cell, about 2.5 KB on a 100x100 board.
+final class BoardState {
+    private final int rows;
+    private final int cols;
+    private final int candyCount;
+    private final int duration;
+    private final long seed;
+    // Counts deals, so a view can tell a new game from a move in the same one
+    private final long deal;
+    private final long version;
+
+    // Shared between snapshots of the same deal; never written after publication
+    private final int[] candies;
+    private final int[] numbers;
+    private final long[] revealed;
+    private final long[] matched;
+
+    private final int firstSelected;
+    private final int secondSelected;
+    private final int pairsFound;
+    private final int misses;
+    private final int timeRemaining;
+
+    private BoardState(MemoryGameEngine engine, long deal, long version, int[] candies, int[] numbers) {
+        this.rows = engine.getRows();
+        this.cols = engine.getCols();
+        this.candyCount = engine.getCandyCount();
+        this.duration = engine.getDuration();
+        this.seed = engine.getSeed();
+        this.deal = deal;
+        this.version = version;
+        this.candies = candies;
+        this.numbers = numbers;
+        this.revealed = engine.copyRevealed();
+        this.matched = engine.copyMatched();
+        this.firstSelected = engine.getFirstSelected();
+        this.secondSelected = engine.getSecondSelected();
+        this.pairsFound = engine.getPairsFound();
+        this.misses = engine.getMisses();
+        this.timeRemaining = engine.getTimeRemaining();
+    }
+
+    // Snapshot the engine; reuses the previous snapshot's deal when it is the same one
+    static BoardState capture(MemoryGameEngine engine, BoardState previous, long deal) {
+        long version = previous != null ? previous.version + 1 : 1;
+        if (previous != null && previous.deal == deal) {
+            return new BoardState(engine, deal, version, previous.candies, previous.numbers);
+        }
+        int cardCount = engine.getCardCount();
+        int[] candies = new int[cardCount];
+        int[] numbers = new int[cardCount];
+        for (int cell = 0; cell < cardCount; cell++) {
+            candies[cell] = engine.getCandy(cell);
+            numbers[cell] = engine.getNumber(cell);
+        }
+        return new BoardState(engine, deal, version, candies, numbers);
+    }
+
+    boolean isRevealed(int cell) { return (revealed[cell >>> 6] & (1L << cell)) != 0; }
+    boolean isMatched(int cell) { return (matched[cell >>> 6] & (1L << cell)) != 0; }
+    int getCandy(int cell) { return candies[cell]; }
+    int getNumber(int cell) { return numbers[cell]; }
+
+    // Bitset word i of the revealed cards, for diffing two snapshots
+    long getRevealedWord(int index) { return revealed[index]; }
+
+    boolean isWon() { return pairsFound >= getPairCount(); }
+    boolean isOver() { return isWon() || timeRemaining <= 0; }
+
+    int getRows() { return rows; }
+    int getCols() { return cols; }
+    int getCardCount() { return rows * cols; }
+    int getPairCount() { return rows * cols / 2; }
+    int getCandyCount() { return candyCount; }
+    int getDuration() { return duration; }
+    long getSeed() { return seed; }
+    long getDeal() { return deal; }
+    long getVersion() { return version; }
+    int getFirstSelected() { return firstSelected; }
+    int getSecondSelected() { return secondSelected; }
+    int getPairsFound() { return pairsFound; }
+    int getMisses() { return misses; }
+    int getTimeRemaining() { return timeRemaining; }
+}
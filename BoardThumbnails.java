@@ -0,0 +1,329 @@
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// PNG pictures of boards without a window, for support tickets and visual
+// regression tests. A board is a seed (which fixes the deal) plus the cards
+// that are face up, drawn with the same sprites and background as the game.
+//
+// Boards go through two pools: render threads draw into images from a fixed
+// set of canvases, and encode threads write them out as PNG and hand the
+// canvas back. submit() blocks while every canvas is busy, so a manifest of
+// any length streams through in constant memory. All render threads share one
+// CardSpriteCache and one pre-rendered background, so a board costs a blit
+// per card. The same input always gives the same pixels.
+final class BoardThumbnails implements Closeable {
+    static final int DEFAULT_SIZE = 480;
+    private static final long SPRITE_CACHE_BYTES = 64L * 1024 * 1024;
+    private static final int PADDING = 16;
+    private static final int CANVASES_PER_THREAD = 2;
+    // Deflate level 2 instead of the default 4: about a fifth faster to
+    // encode for files under a tenth bigger
+    private static final float PNG_QUALITY = 0.75f;
+
+    private final Path outputDir;
+    private final int width;
+    private final int height;
+    private final CardSpriteCache sprites;
+    private final ImagePack imagePack;
+    private final BufferedImage background;
+    private final BlockingQueue<BufferedImage> canvases;
+    private final ExecutorService renderers;
+    private final ExecutorService encoders;
+    // One PNG writer per encode thread, reused for every image
+    private final ThreadLocal<ImageWriter> writers = ThreadLocal.withInitial(
+        () -> ImageIO.getImageWritersByFormatName("png").next());
+
+    private final LatencyHistogram renderTimes = new LatencyHistogram();
+    private final LatencyHistogram encodeTimes = new LatencyHistogram();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    // One board to draw: the deal for seed, and one bit per face-up cell
+    static final class Board {
+        final String name;
+        final int rows;
+        final int cols;
+        final long seed;
+        final long[] revealed;
+
+        Board(String name, int rows, int cols, long seed, long[] revealed) {
+            this.name = name;
+            this.rows = rows;
+            this.cols = cols;
+            this.seed = seed;
+            this.revealed = revealed;
+        }
+
+        boolean isRevealed(int cell) { return (revealed[cell >>> 6] & (1L << cell)) != 0; }
+    }
+
+    BoardThumbnails(Path outputDir, int width, int height, int threads) throws IOException {
+        this.outputDir = outputDir;
+        this.width = width;
+        this.height = height;
+        Files.createDirectories(outputDir);
+        // The default stream caches to a temporary file; in memory is much faster
+        ImageIO.setUseCache(false);
+
+        this.sprites = new CardSpriteCache(CandyMemoryGame.loadCandyImages(), SPRITE_CACHE_BYTES);
+        // Every pack image is decoded up front, in parallel, before the pools
+        // start: a decode inside the sprite cache would hold its lock and
+        // stall every render thread. Only an image the cache budget evicted
+        // is decoded again there.
+        this.imagePack = CandyMemoryGame.openImagePack(Integer.MAX_VALUE);
+        if (imagePack != null) {
+            sprites.setImagePack(imagePack, null);
+        }
+        this.background = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = background.createGraphics();
+        BackgroundPanel.paintBackground(g2d, width, height);
+        g2d.dispose();
+
+        this.canvases = new ArrayBlockingQueue<>(2 * threads * CANVASES_PER_THREAD);
+        for (int i = 0; i < 2 * threads * CANVASES_PER_THREAD; i++) {
+            canvases.add(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB));
+        }
+        this.renderers = Executors.newFixedThreadPool(threads, threadFactory("candy-thumbnail-render"));
+        this.encoders = Executors.newFixedThreadPool(threads, threadFactory("candy-thumbnail-encode"));
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // Queue a board; blocks while every canvas is in use
+    void submit(Board board) throws InterruptedException {
+        BufferedImage canvas = canvases.take();
+        renderers.execute(() -> {
+            try {
+                long start = System.nanoTime();
+                render(board, canvas);
+                renderTimes.record(System.nanoTime() - start);
+                encoders.execute(() -> encode(board, canvas));
+            } catch (RuntimeException e) {
+                System.out.println("Error rendering thumbnail " + board.name + ": " + e.getMessage());
+                failed.incrementAndGet();
+                canvases.add(canvas);
+            }
+        });
+    }
+
+    private void render(Board board, BufferedImage canvas) {
+        MemoryGameEngine engine = new MemoryGameEngine(board.rows, board.cols,
+            MemoryGameEngine.candyCountFor(board.rows, board.cols, CandyMemoryGame.CANDY_COUNT), 1);
+        engine.newGame(board.seed);
+
+        // Square cards, as large as fit, centred; the gap shrinks with the cards
+        int pitch = Math.max(1, Math.min((width - 2 * PADDING) / board.cols, (height - 2 * PADDING) / board.rows));
+        int gap = pitch / 10;
+        int cellSize = Math.max(1, pitch - gap);
+        int originX = (width - (board.cols * pitch - gap)) / 2;
+        int originY = (height - (board.rows * pitch - gap)) / 2;
+
+        Graphics2D g2d = canvas.createGraphics();
+        g2d.drawImage(background, 0, 0, null);
+        // Generated candies are drawn in parallel outside the cache lock, not one by one under it
+        sprites.prefetchFaces(g2d.getDeviceConfiguration(), 0, engine.getCandyCount(), cellSize, cellSize, 1.0);
+        for (int row = 0; row < board.rows; row++) {
+            for (int col = 0; col < board.cols; col++) {
+                int cell = row * board.cols + col;
+                BoardComponent.paintCard(g2d, board.isRevealed(cell), engine.getCandy(cell), engine.getNumber(cell),
+                    sprites, originX + col * pitch, originY + row * pitch, cellSize, cellSize);
+            }
+        }
+        g2d.dispose();
+    }
+
+    // Written under a temporary name and moved into place, so a reader never sees half a file
+    private void encode(Board board, BufferedImage canvas) {
+        long start = System.nanoTime();
+        Path path = outputDir.resolve(board.name + ".png");
+        Path temp = outputDir.resolve(board.name + ".png.tmp");
+        try {
+            ImageWriter writer = writers.get();
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(PNG_QUALITY);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024);
+                 ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+                writer.setOutput(stream);
+                writer.write(null, new IIOImage(canvas, null, null), param);
+            } finally {
+                writer.setOutput(null);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            bytes.addAndGet(Files.size(path));
+            written.incrementAndGet();
+            encodeTimes.record(System.nanoTime() - start);
+        } catch (IOException e) {
+            System.out.println("Error writing thumbnail " + board.name + ": " + e.getMessage());
+            failed.incrementAndGet();
+        } finally {
+            canvases.add(canvas);
+        }
+    }
+
+    // Wait for every submitted board to be written
+    @Override
+    public void close() {
+        try {
+            renderers.shutdown();
+            renderers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            encoders.shutdown();
+            encoders.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (imagePack != null) {
+            try {
+                imagePack.close();
+            } catch (IOException e) {
+                System.out.println("Error closing image pack: " + e.getMessage());
+            }
+        }
+    }
+
+    String summary(double seconds) {
+        return String.format("%d thumbnails (%d failed, %.1f MB) in %.1f s, %.0f per minute%n  render %s%n  encode %s",
+            written.get(), failed.get(), bytes.get() / 1e6, seconds, written.get() * 60 / Math.max(seconds, 1e-9),
+            renderTimes.summary("ms", 1e6), encodeTimes.summary("ms", 1e6));
+    }
+
+    // A manifest line: name rows cols seed [cells], where cells is "all" or a
+    // comma-separated list of face-up cells and ranges, e.g. 0,3,8-11
+    static Board parse(String line) {
+        String[] fields = line.trim().split("\\s+");
+        if (fields.length < 4 || fields.length > 5) {
+            throw new IllegalArgumentException("Expected name rows cols seed [cells]: " + line);
+        }
+        if (!fields[0].matches("[A-Za-z0-9._-]+")) {
+            throw new IllegalArgumentException("Names may only use letters, digits, '.', '_' and '-': " + fields[0]);
+        }
+        int rows = Integer.parseInt(fields[1]);
+        int cols = Integer.parseInt(fields[2]);
+        if (rows <= 0 || cols <= 0 || (rows * cols) % 2 != 0) {
+            throw new IllegalArgumentException("Board must have an even number of cards: " + rows + "x" + cols);
+        }
+        int cardCount = rows * cols;
+        long[] revealed = new long[(cardCount + 63) >>> 6];
+        if (fields.length == 5 && fields[4].equals("all")) {
+            for (int cell = 0; cell < cardCount; cell++) {
+                revealed[cell >>> 6] |= 1L << cell;
+            }
+        } else if (fields.length == 5) {
+            for (String range : fields[4].split(",")) {
+                int dash = range.indexOf('-');
+                int from = Integer.parseInt(dash == -1 ? range : range.substring(0, dash));
+                int to = dash == -1 ? from : Integer.parseInt(range.substring(dash + 1));
+                if (from < 0 || to >= cardCount || from > to) {
+                    throw new IllegalArgumentException("Cells out of range for " + rows + "x" + cols + ": " + range);
+                }
+                for (int cell = from; cell <= to; cell++) {
+                    revealed[cell >>> 6] |= 1L << cell;
+                }
+            }
+        }
+        return new Board(fields[0], rows, cols, Long.decode(fields[3]), revealed);
+    }
+
+    // Random boards of a few sizes with about a third of the cards up, for
+    // measuring throughput; the same count always gives the same boards
+    private static Board randomBoard(SplittableRandom random, int index) {
+        int[] sizes = {4, 6, 8, 10, 20};
+        int size = sizes[random.nextInt(sizes.length)];
+        long[] revealed = new long[(size * size + 63) >>> 6];
+        for (int cell = 0; cell < size * size; cell++) {
+            if (random.nextInt(3) == 0) {
+                revealed[cell >>> 6] |= 1L << cell;
+            }
+        }
+        return new Board(String.format("board-%06d", index), size, size, random.nextLong(), revealed);
+    }
+
+    // java BoardThumbnails <manifest | count> ...: the same as --thumbnails,
+    // without needing -Djava.awt.headless=true. Starting from CandyMemoryGame,
+    // a JFrame, initializes AWT before main runs, too early to go headless.
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        try {
+            run(args);
+        } catch (IOException e) {
+            System.out.println("Error writing thumbnails: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // --thumbnails <manifest | count> [output dir] [width height]: one PNG per
+    // manifest line, or count random boards
+    static void run(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Usage: --thumbnails <manifest | count> [output dir] [width height]");
+            return;
+        }
+        Path outputDir = Paths.get(args.length >= 2 ? args[1] : "thumbnails");
+        int width = args.length >= 4 ? Integer.parseInt(args[2]) : DEFAULT_SIZE;
+        int height = args.length >= 4 ? Integer.parseInt(args[3]) : DEFAULT_SIZE;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        long start = System.nanoTime();
+        BoardThumbnails thumbnails = new BoardThumbnails(outputDir, width, height, threads);
+        try {
+            if (args[0].matches("\\d+")) {
+                int count = Integer.parseInt(args[0]);
+                SplittableRandom random = new SplittableRandom(0x5EEDL);
+                for (int i = 0; i < count; i++) {
+                    thumbnails.submit(randomBoard(random, i));
+                }
+            } else {
+                try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]))) {
+                    String line;
+                    int lineNumber = 0;
+                    while ((line = reader.readLine()) != null) {
+                        lineNumber++;
+                        if (line.isBlank() || line.startsWith("#")) {
+                            continue;
+                        }
+                        try {
+                            thumbnails.submit(parse(line));
+                        } catch (IllegalArgumentException e) {
+                            System.out.println("Error on manifest line " + lineNumber + ": " + e.getMessage());
+                        }
+                    }
+                }
+            }
+        } finally {
+            thumbnails.close();
+        }
+        System.out.println(thumbnails.summary((System.nanoTime() - start) / 1e9));
+    }
+}
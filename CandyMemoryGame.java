@@ -1,88 +1,231 @@
 import javax.swing.*;
-import javax.sound.sampled.*;
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
 import java.awt.geom.RoundRectangle2D;
 import java.awt.image.BufferedImage; // Add this import for BufferedImage
-import java.io.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
 
 
 public class CandyMemoryGame extends JFrame {
-    private static final int GRID_SIZE = 4; // 4x4 grid
+    private static final int GRID_SIZE = 4; // 4x4 grid by default
+    private static final int MAX_GRID_SIZE = 100; // Largest rows or columns supported
     private static final int GAME_DURATION = 40; // 40 seconds countdown
-    private List<Card> cards;
-    private Card firstSelectedCard;
-    private Card secondSelectedCard;
-    private int pairsFound;
-    private javax.swing.Timer gameTimer;
-    private int timeRemaining;
-    
-    // Sound effects
-    private Clip flipSound;
-    private Clip matchSound;
-    private Clip winSound;
-    private Clip loseSound;
+    // Candies with artwork; bigger boards add generated candies. Every board
+    // deals from candyCountFor(rows, cols, CANDY_COUNT).
+    static final int CANDY_COUNT = 8;
+    private final int rows;
+    private final int cols;
+    private final int gameDuration;
+    // The rules run on GameLogic's thread, which owns the engine; the window
+    // only renders the snapshots it publishes
+    private GameLogic logic;
+    private BoardState shownState;
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+    private long pendingInputNanos;
+    private final Random random = new Random();
+    // -Dcandy.seed=<hex, as shown in the title> replays a reported board
+    private long nextSeed = initialSeed();
+    private ReplayLog replayLog;
+    // Live events for local spectators (-Dcandy.spectatorPort=<port>)
+    private SpectatorRelay spectatorRelay;
+    // The game in progress is saved here and resumed on the next start
+    // (-Dcandy.resume=false turns it off)
+    private GameSaver gameSaver;
+    private Path savePath;
+    // Finished games go to the stats store (-Dcandy.stats=false turns it off)
+    private static final String PLAYER = StatsStore.defaultPlayer();
+    private volatile StatsStore statsStore;
+    
+    // A mismatched pair stays face up this long
+    private static final long FLIP_BACK_NANOS = GameLoop.SECOND_NANOS;
+    // -Dcandy.fastFlip=true: clicking a third card turns a mismatched pair back at once
+    private static final boolean FAST_FLIP = Boolean.getBoolean("candy.fastFlip");
+    // Drives the card animations on the EDT
+    private final GameLoop gameLoop = new GameLoop("candy-game-loop");
+    
+    // Sound effects, mixed by one audio engine; ids are -1 until loaded
+    private static final int AUDIO_CHANNELS = 2;
+    private static final String SOUND_THEME = System.getProperty("candy.soundTheme", "CANDY");
+    private static final int AUDIO_BUFFER_MILLIS = Integer.getInteger("candy.audioBufferMillis", 40);
+    private static final int AUDIO_VOICES = 16;
+    // Loaded in the background, so these are published through volatiles
+    private volatile AudioEngine audio;
+    private volatile int flipSound = -1;
+    private volatile int matchSound = -1;
+    private volatile int winSound = -1;
+    private volatile int loseSound = -1;
     
     // UI Components
-    private JPanel gamePanel;
+    private BoardComponent board;
     private JLabel timerLabel;
     private JLabel pairsLabel;
     private JButton newGameButton;
     private JLabel resultLabel;
     
     // Color theme
-    private static final Color BACKGROUND_COLOR = new Color(235, 222, 240); // Light purple
-    private static final Color ACCENT_COLOR = new Color(160, 100, 200); // Medium purple
-    private static final Color TITLE_COLOR = new Color(90, 50, 120); // Dark purple
-    private static final Color CARD_COLOR = new Color(210, 190, 230); // Very light purple
+    static final Color BACKGROUND_COLOR = new Color(235, 222, 240); // Light purple
+    static final Color ACCENT_COLOR = new Color(160, 100, 200); // Medium purple
+    static final Color TITLE_COLOR = new Color(90, 50, 120); // Dark purple
+    static final Color CARD_COLOR = new Color(210, 190, 230); // Very light purple
     
     // Candy images
+    private static final long SPRITE_CACHE_BYTES = 32L * 1024 * 1024;
+    // The artwork shipped with the game, in the working directory
+    private static final List<String> SHIPPED_CANDY_IMAGES =
+        List.of("Candy 1.jpeg", "candy 2.png", "candy 3.jpeg", "Candy 4.jpeg");
     private Image[] candyImages;
+    private CardSpriteCache cardSprites;
+    
+    // Lowers antialiasing and decorations while paints run over the frame budget
+    private final RenderQualityGovernor renderQuality = new RenderQualityGovernor(GameLoop.FRAME_NANOS);
+    
+    // Instrumentation, exported by Metrics and recorded as flight events
+    private static final LatencyHistogram BUTTON_PAINT = Metrics.histogram("paint.button");
+    private static final LongAdder GAMES_WON = Metrics.counter("games.won");
+    private static final LongAdder GAMES_LOST = Metrics.counter("games.lost");
 
     public CandyMemoryGame() {
+        this(GRID_SIZE, GRID_SIZE, GAME_DURATION);
+    }
+    
+    public CandyMemoryGame(int rows, int cols, int gameDuration) {
         super("Candy Memory Game");
+        if (rows > MAX_GRID_SIZE || cols > MAX_GRID_SIZE) {
+            throw new IllegalArgumentException("Board is limited to " + MAX_GRID_SIZE + "x" + MAX_GRID_SIZE);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.gameDuration = gameDuration;
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setSize(700, 800);
         setLayout(new BorderLayout());
         setLocationRelativeTo(null);
         
-        // Load sounds
-        loadSounds();
-        
-        // Load candy images
-        loadCandyImages();
+        // Cards show a placeholder face until the candy images are loaded
+        candyImages = new Image[CANDY_COUNT];
+        cardSprites = new CardSpriteCache(candyImages, SPRITE_CACHE_BYTES);
+        cardSprites.setQuality(renderQuality.getLevel());
+        renderQuality.setChangeListener(() -> {
+            cardSprites.setQuality(renderQuality.getLevel());
+            repaint();
+        });
         
         initializeGame();
         setupUI();
         
         setVisible(true);
+        
+        // Sounds and candy images load in parallel off the EDT
+        loadAssetsInBackground();
+    }
+    
+    private void loadAssetsInBackground() {
+        ExecutorService loader = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "candy-asset-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        CompletableFuture<Void> sounds = CompletableFuture.runAsync(this::loadSounds, loader);
+        CompletableFuture<Void> images = CompletableFuture
+            .supplyAsync(CandyMemoryGame::loadCandyImages, loader)
+            .thenAccept(loaded -> SwingUtilities.invokeLater(() -> {
+                candyImages = loaded;
+                cardSprites.setCandyImages(loaded);
+                board.repaint();
+            }));
+        int candyCount = shownState.getCandyCount();
+        CompletableFuture<Void> art = CompletableFuture
+            .supplyAsync(() -> openImagePack(candyCount), loader)
+            .thenAccept(pack -> SwingUtilities.invokeLater(() -> {
+                // The pack stays open for the session, so evicted images can be decoded again
+                if (pack != null) {
+                    cardSprites.setImagePack(pack, board::repaint);
+                    board.repaint();
+                }
+            }));
+        
+        CompletableFuture.allOf(sounds, images, art).whenComplete((result, error) -> {
+            SwingUtilities.invokeLater(StartupMetrics::interactive);
+            // The stats store is not needed to play, so it opens last
+            CompletableFuture.runAsync(this::openStatsStore, loader).whenComplete((r, e) -> loader.shutdown());
+        });
     }
     
-    private void loadCandyImages() {
+    private void openStatsStore() {
+        if (!Boolean.parseBoolean(System.getProperty("candy.stats", "true"))) {
+            return;
+        }
         try {
-            // Create array to hold 8 different candy images
-            candyImages = new Image[8];
-            
-            // Load embedded candy images or create placeholder images
-            candyImages[0] = createCandyImage(new Color(255, 100, 100)); // Red candy
-            candyImages[1] = createCandyImage(new Color(100, 200, 100)); // Green candy
-            candyImages[2] = createCandyImage(new Color(100, 100, 255)); // Blue candy
-            candyImages[3] = createCandyImage(new Color(255, 200, 0));   // Yellow candy
-            candyImages[4] = createCandyImage(new Color(200, 100, 200)); // Purple candy
-            candyImages[5] = createCandyImage(new Color(255, 150, 0));   // Orange candy
-            candyImages[6] = createCandyImage(new Color(100, 200, 200)); // Cyan candy
-            candyImages[7] = createCandyImage(new Color(255, 180, 180)); // Pink candy
+            StatsStore store = StatsStore.open(StatsStore.defaultDirectory());
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    store.close();
+                } catch (IOException e) {
+                    System.out.println("Error closing stats store: " + e.getMessage());
+                }
+            }));
+            statsStore = store;
+        } catch (IOException e) {
+            System.out.println("Error opening stats store: " + e.getMessage());
+        }
+    }
+    
+    // Drawn candies, for the slots the image pack does not cover
+    static Image[] loadCandyImages() {
+        // Create array to hold 8 different candy images
+        Image[] images = new Image[CANDY_COUNT];
+        try {
+            Color[] colors = {
+                new Color(255, 100, 100), // Red candy
+                new Color(100, 200, 100), // Green candy
+                new Color(100, 100, 255), // Blue candy
+                new Color(255, 200, 0),   // Yellow candy
+                new Color(200, 100, 200), // Purple candy
+                new Color(255, 150, 0),   // Orange candy
+                new Color(100, 200, 200), // Cyan candy
+                new Color(255, 180, 180)  // Pink candy
+            };
             
+            IntStream.range(0, colors.length).parallel()
+                .forEach(i -> images[i] = createCandyImage(colors[i]));
         } catch (Exception e) {
             System.out.println("Error loading candy images: " + e.getMessage());
             e.printStackTrace();
         }
+        return images;
+    }
+    
+    // Candy artwork: the pack in -Dcandy.imagePack (a directory or .zip), or
+    // the shipped images. The first warmCount images are decoded before it
+    // returns, as far as the cache budget allows. Null if there is none.
+    static ImagePack openImagePack(int warmCount) {
+        long cacheBytes = Long.getLong("candy.imageCacheMB", 64) * 1024 * 1024;
+        String packPath = System.getProperty("candy.imagePack");
+        try {
+            ImagePack pack = packPath != null
+                ? ImagePack.open(Paths.get(packPath), cacheBytes)
+                : ImagePack.files(Paths.get(""), SHIPPED_CANDY_IMAGES, cacheBytes);
+            pack.loadAll(warmCount);
+            return pack;
+        } catch (IOException e) {
+            System.out.println("Error opening image pack: " + e.getMessage());
+            return null;
+        }
     }
     
     // Create a candy icon image since we don't have actual image files
-    private Image createCandyImage(Color baseColor) {
+    static Image createCandyImage(Color baseColor) {
         int size = 80;
         BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
         Graphics2D g = image.createGraphics();
@@ -115,157 +258,137 @@ public class CandyMemoryGame extends JFrame {
     
     private void loadSounds() {
         try {
+            AudioEngine engine = new AudioEngine(AUDIO_CHANNELS, AUDIO_BUFFER_MILLIS, AUDIO_VOICES);
+            
             // Create embedded sounds
-            createEmbeddedSounds();
+            createEmbeddedSounds(engine);
+            engine.start();
+            
+            // Publish last; until now playSound stays silent
+            audio = engine;
         } catch (Exception e) {
             System.out.println("Error loading sounds: " + e.getMessage());
             e.printStackTrace();
         }
     }
     
-    // The rest of the createEmbeddedSounds(), createBeepSound(), and createSequenceSound() methods remain unchanged
     // Create embedded sounds when sound files aren't available
-    private void createEmbeddedSounds() {
+    private void createEmbeddedSounds(AudioEngine engine) {
         try {
-            // Create basic sounds programmatically
-            flipSound = createBeepSound(300, 50);  // Short high tone
-            matchSound = createBeepSound(600, 150); // Medium high tone
-            winSound = createSequenceSound(new int[]{600, 800, 1000}, new int[]{150, 150, 300}); // Rising tones
-            loseSound = createSequenceSound(new int[]{400, 300, 200}, new int[]{150, 150, 300}); // Falling tones
+            // Synthesize the themed sound pack; its sounds render in parallel
+            ToneSynth synth = new ToneSynth(AudioEngine.SAMPLE_RATE, engine.getChannels());
+            SoundPack pack = SoundPack.synthesize(SoundPack.Theme.valueOf(SOUND_THEME.toUpperCase()), synth);
+            flipSound = engine.register(pack.get(SoundPack.FLIP));   // Short high tone
+            matchSound = engine.register(pack.get(SoundPack.MATCH)); // Medium high tone
+            winSound = engine.register(pack.get(SoundPack.WIN));     // Rising tones
+            loseSound = engine.register(pack.get(SoundPack.LOSE));   // Falling tones
         } catch (Exception e) {
             System.out.println("Failed to create embedded sounds: " + e.getMessage());
             e.printStackTrace();
         }
     }
     
-    // Create a simple beep sound with specified frequency and duration
-    private Clip createBeepSound(int frequency, int duration) {
-        try {
-            AudioFormat format = new AudioFormat(44100, 8, 1, true, false);
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            
-            // Generate a simple sine wave
-            float sampleRate = format.getSampleRate();
-            byte[] buffer = new byte[(int)(duration * format.getSampleRate() / 1000)];
-            for (int i = 0; i < buffer.length; i++) {
-                double angle = 2.0 * Math.PI * i / (sampleRate / frequency);
-                buffer[i] = (byte)(Math.sin(angle) * 127.0);
-            }
-            baos.write(buffer);
-            
-            byte[] audioData = baos.toByteArray();
-            AudioInputStream ais = new AudioInputStream(
-                new ByteArrayInputStream(audioData),
-                format,
-                audioData.length / format.getFrameSize()
-            );
-            
-            Clip clip = AudioSystem.getClip();
-            clip.open(ais);
-            return clip;
-        } catch (Exception e) {
-            System.out.println("Error creating beep sound: " + e.getMessage());
-            return null;
+    // Overlapping sounds are mixed, so a quick second flip no longer cuts off the first
+    private void playSound(int sound) {
+        AudioEngine engine = audio;
+        if (engine != null) {
+            engine.play(sound);
+        }
+    }
+
+    private void initializeGame() {
+        MemoryGameEngine engine = new MemoryGameEngine(rows, cols,
+            MemoryGameEngine.candyCountFor(rows, cols, CANDY_COUNT), gameDuration);
+        logic = new GameLogic(engine, FLIP_BACK_NANOS, FAST_FLIP, this::requestRefresh);
+        shownState = logic.latest();
+        logic.addListener(this::onGameEvent);
+        openReplayLog();
+        openSpectatorRelay();
+        openGameSaver();
+    }
+    
+    // Sounds and results, on the logic thread
+    private void onGameEvent(MemoryGameEngine engine, int type, int cell) {
+        switch (type) {
+            case GameEventListener.CLICK:
+                playSound(flipSound); // Turning a card over
+                break;
+            case GameEventListener.MATCH:
+                playSound(matchSound);
+                break;
+            case GameEventListener.WIN:
+                playSound(matchSound);
+                finishGame(engine, true);
+                break;
+            case GameEventListener.TIME_UP:
+                finishGame(engine, false);
+                break;
+            default:
+                break;
         }
     }
     
-    // Create a sequence of tones
-    private Clip createSequenceSound(int[] frequencies, int[] durations) {
+    private long initialSeed() {
+        String seed = System.getProperty("candy.seed");
+        return seed != null ? Long.parseUnsignedLong(seed, 16) : random.nextLong();
+    }
+    
+    // Record every game to the file named by -Dcandy.replayLog
+    private void openReplayLog() {
+        String path = System.getProperty("candy.replayLog");
+        if (path == null) {
+            return;
+        }
         try {
-            AudioFormat format = new AudioFormat(44100, 8, 1, true, false);
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            float sampleRate = format.getSampleRate();
-            
-            for (int t = 0; t < frequencies.length; t++) {
-                int frequency = frequencies[t];
-                int duration = durations[t];
-                
-                byte[] buffer = new byte[(int)(duration * format.getSampleRate() / 1000)];
-                for (int i = 0; i < buffer.length; i++) {
-                    double angle = 2.0 * Math.PI * i / (sampleRate / frequency);
-                    buffer[i] = (byte)(Math.sin(angle) * 127.0);
+            replayLog = ReplayLog.open(Paths.get(path));
+            logic.addListener(replayLog);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    replayLog.close();
+                } catch (IOException e) {
+                    System.out.println("Error closing replay log: " + e.getMessage());
                 }
-                baos.write(buffer);
-            }
-            
-            byte[] audioData = baos.toByteArray();
-            AudioInputStream ais = new AudioInputStream(
-                new ByteArrayInputStream(audioData),
-                format,
-                audioData.length / format.getFrameSize()
-            );
-            
-            Clip clip = AudioSystem.getClip();
-            clip.open(ais);
-            return clip;
-        } catch (Exception e) {
-            System.out.println("Error creating sequence sound: " + e.getMessage());
-            return null;
+            }));
+        } catch (IOException e) {
+            System.out.println("Error opening replay log: " + e.getMessage());
         }
     }
     
-    private void playSound(Clip sound) {
+    // Stream live events to local spectators on -Dcandy.spectatorPort
+    private void openSpectatorRelay() {
+        Integer port = Integer.getInteger("candy.spectatorPort");
+        if (port == null) {
+            return;
+        }
         try {
-            if (sound != null) {
-                // Stop the sound if it's currently playing
-                if (sound.isRunning()) {
-                    sound.stop();
-                }
-                sound.setFramePosition(0);
-                sound.start();
-            }
-        } catch (Exception e) {
-            System.out.println("Error playing sound: " + e.getMessage());
+            SpectatorBus bus = new SpectatorBus(SpectatorBus.DEFAULT_CAPACITY);
+            logic.addListener(bus);
+            spectatorRelay = new SpectatorRelay(bus, logic::latest, port);
+        } catch (IOException e) {
+            System.out.println("Error opening spectator relay: " + e.getMessage());
         }
     }
-
-    private void initializeGame() {
-        cards = new ArrayList<>();
-        firstSelectedCard = null;
-        secondSelectedCard = null;
-        pairsFound = 0;
-        timeRemaining = GAME_DURATION;
-        gameTimer = new javax.swing.Timer(1000, e -> {
-            timeRemaining--;
-            updateTimerLabel();
-            
-            if (timeRemaining <= 0) {
-                gameTimer.stop();
-                checkGameEnd();
-            }
-        });
+    
+    private void openGameSaver() {
+        if (!Boolean.parseBoolean(System.getProperty("candy.resume", "true"))) {
+            return;
+        }
+        try {
+            savePath = StatsStore.defaultDirectory().resolve("game.snapshot");
+            gameSaver = GameSaver.open(savePath);
+            logic.addListener(gameSaver);
+            Runtime.getRuntime().addShutdownHook(new Thread(gameSaver::close));
+        } catch (IOException e) {
+            System.out.println("Error opening saved game: " + e.getMessage());
+        }
     }
     
-    // The setupUI() method remains unchanged
     private void setupUI() {
-        // Candy background
-        setContentPane(new JPanel() {
-            @Override
-            protected void paintComponent(Graphics g) {
-                super.paintComponent(g);
-                Graphics2D g2d = (Graphics2D) g;
-                
-                GradientPaint gradient = new GradientPaint(
-                    0, 0, BACKGROUND_COLOR, 
-                    getWidth(), getHeight(), new Color(BACKGROUND_COLOR.getRed() - 20, 
-                                                     BACKGROUND_COLOR.getGreen() - 20, 
-                                                     BACKGROUND_COLOR.getBlue() - 20));
-                g2d.setPaint(gradient);
-                g2d.fillRect(0, 0, getWidth(), getHeight());
-                
-                // Add some candy-like decorations
-                g2d.setColor(new Color(ACCENT_COLOR.getRed(), ACCENT_COLOR.getGreen(), 
-                                     ACCENT_COLOR.getBlue(), 40));
-                
-                // Draw some decorative circles
-                for (int i = 0; i < 20; i++) {
-                    int size = 20 + (int)(Math.random() * 60);
-                    int x = (int)(Math.random() * getWidth());
-                    int y = (int)(Math.random() * getHeight());
-                    g2d.fillOval(x, y, size, size);
-                }
-            }
-        });
+        // Candy background, rendered once per window size
+        BackgroundPanel background = new BackgroundPanel();
+        background.setFirstPaintListener(StartupMetrics::firstFrame);
+        background.setQualityGovernor(renderQuality);
+        setContentPane(background);
         
         // Header Panel
         JPanel headerPanel = new JPanel(new BorderLayout());
@@ -286,11 +409,13 @@ public class CandyMemoryGame extends JFrame {
         timerLabel = new JLabel("⏱️ 0:40");
         timerLabel.setFont(new Font("Segoe UI", Font.BOLD, 22));
         timerLabel.setForeground(TITLE_COLOR);
+        fixLabelWidth(timerLabel, "⏱️ 00:00");
         statsPanel.add(timerLabel);
         
-        pairsLabel = new JLabel("🍬 Pairs: 0/8");
+        pairsLabel = new JLabel("🍬 Pairs: 0/" + shownState.getPairCount());
         pairsLabel.setFont(new Font("Segoe UI", Font.BOLD, 22));
         pairsLabel.setForeground(TITLE_COLOR);
+        fixLabelWidth(pairsLabel, String.format("🍬 Pairs: %d/%d", shownState.getPairCount(), shownState.getPairCount()));
         statsPanel.add(pairsLabel);
         
         resultLabel = new JLabel("");
@@ -310,27 +435,49 @@ public class CandyMemoryGame extends JFrame {
         add(headerPanel, BorderLayout.NORTH);
         
         // Game Panel
-        gamePanel = new JPanel(new GridLayout(GRID_SIZE, GRID_SIZE, 10, 10));
-        gamePanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
-        gamePanel.setOpaque(false);
+        // One component draws every card; large boards scroll
+        board = new BoardComponent(shownState, cardSprites, gameLoop, this::handleCardClick);
+        board.setQualityGovernor(renderQuality);
+        JScrollPane boardScroller = new JScrollPane(board);
+        boardScroller.setOpaque(false);
+        boardScroller.getViewport().setOpaque(false);
+        boardScroller.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
         
         // Wrap game panel in another panel for better styling
         JPanel gamePanelWrapper = new JPanel(new BorderLayout());
         gamePanelWrapper.setOpaque(false);
         gamePanelWrapper.setBorder(BorderFactory.createEmptyBorder(0, 20, 20, 20));
-        gamePanelWrapper.add(gamePanel, BorderLayout.CENTER);
+        gamePanelWrapper.add(boardScroller, BorderLayout.CENTER);
         
         add(gamePanelWrapper, BorderLayout.CENTER);
         
-        startNewGame();
+        // -Dcandy.frameStats prints the flip animation frame times on exit
+        if (Boolean.getBoolean("candy.frameStats")) {
+            BoardComponent statsBoard = board;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println(statsBoard.frameSummary())));
+        }
+        
+        // Pick up the game that was in progress when the app last closed
+        logic.resumeOrNewGame(gameSaver != null ? savePath : null, takeSeed());
+    }
+    
+    // Pin a label to the width of its widest text. Then updating it every
+    // second never re-lays out the header, and only the label itself repaints.
+    private static void fixLabelWidth(JLabel label, String widestText) {
+        String text = label.getText();
+        label.setText(widestText);
+        Dimension size = label.getPreferredSize();
+        label.setText(text);
+        label.setPreferredSize(size);
     }
     
     private JButton createStyledButton(String text) {
         JButton button = new JButton(text) {
             @Override
             protected void paintComponent(Graphics g) {
+                long paintStart = System.nanoTime();
                 Graphics2D g2d = (Graphics2D) g;
-                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                renderQuality.applyHints(g2d);
                 
                 // Create rounded button
                 RoundRectangle2D roundedRectangle = new RoundRectangle2D.Float(
@@ -364,6 +511,11 @@ public class CandyMemoryGame extends JFrame {
                 g2d.setFont(getFont());
                 g2d.setColor(Color.WHITE);
                 g2d.drawString(getText(), x, y);
+                
+                long paintNanos = System.nanoTime() - paintStart;
+                BUTTON_PAINT.record(paintNanos);
+                FlightEvents.paint("button", paintNanos);
+                renderQuality.record(paintNanos);
             }
         };
         
@@ -379,202 +531,84 @@ public class CandyMemoryGame extends JFrame {
     }
     
     private void startNewGame() {
-        gameTimer.stop();
-        initializeGame();
-        cards.clear();
-        gamePanel.removeAll();
-        
-        // Create card pairs
-        createCardPairs();
-        Collections.shuffle(cards);
-        
-        // Assign random numbers to cards (1-16)
-        List<Integer> cardNumbers = new ArrayList<>();
-        for (int i = 1; i <= GRID_SIZE * GRID_SIZE; i++) {
-            cardNumbers.add(i);
-        }
-        Collections.shuffle(cardNumbers);
-        
-        // Create card buttons
-        for (int i = 0; i < cards.size(); i++) {
-            Card card = cards.get(i);
-            int cardNumber = cardNumbers.get(i);
-            card.setNumber(cardNumber);
-            
-            JButton button = createCardButton(card);
-            card.setButton(button);
-            gamePanel.add(button);
-        }
-        
-        updateStatsLabels();
-        resultLabel.setText("");
-        resultLabel.setForeground(Color.BLACK);
-        timeRemaining = GAME_DURATION;
-        updateTimerLabel();
-        gameTimer.start();
-        
-        gamePanel.revalidate();
-        gamePanel.repaint();
+        // Deal a new board; the engine shuffles the candies and card numbers
+        logic.newGame(takeSeed());
     }
     
-    private JButton createCardButton(Card card) {
-        JButton button = new JButton() {
-            @Override
-            protected void paintComponent(Graphics g) {
-                Graphics2D g2d = (Graphics2D) g;
-                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                
-                // Create rounded card
-                RoundRectangle2D roundedRectangle = new RoundRectangle2D.Float(
-                    0, 0, getWidth() - 1, getHeight() - 1, 20, 20);
-                
-                if (card.isRevealed()) {
-                    // Card front - show candy image
-                    g2d.setColor(Color.WHITE);
-                    g2d.fill(roundedRectangle);
-                    
-                    // Draw candy image
-                    Image candyImage = card.getCandyImage();
-                    if (candyImage != null) {
-                        int margin = 10;
-                        g2d.drawImage(candyImage, margin, margin, 
-                                     getWidth() - 2 * margin, getHeight() - 2 * margin, this);
-                    }
-                    
-                    // Outer border
-                    g2d.setColor(ACCENT_COLOR);
-                    g2d.setStroke(new BasicStroke(3));
-                    g2d.draw(roundedRectangle);
-                } else {
-                    // Card back - show number
-                    g2d.setColor(CARD_COLOR);
-                    g2d.fill(roundedRectangle);
-                    
-                    // Add some candy-like pattern
-                    g2d.setColor(new Color(ACCENT_COLOR.getRed(), ACCENT_COLOR.getGreen(), 
-                                         ACCENT_COLOR.getBlue(), 40));
-                    for (int i = 0; i < 5; i++) {
-                        int size = 10 + (int)(Math.random() * 15);
-                        int x = (int)(Math.random() * getWidth());
-                        int y = (int)(Math.random() * getHeight());
-                        g2d.fillOval(x, y, size, size);
-                    }
-                    
-                    // Border
-                    g2d.setColor(ACCENT_COLOR);
-                    g2d.setStroke(new BasicStroke(3));
-                    g2d.draw(roundedRectangle);
-                    
-                    // Draw the card number
-                    Font numberFont = new Font("Segoe UI", Font.BOLD, 26);
-                    g2d.setFont(numberFont);
-                    FontMetrics fm = g2d.getFontMetrics();
-                    String numberText = String.valueOf(card.getNumber());
-                    Rectangle2D r = fm.getStringBounds(numberText, g2d);
-                    int x = (getWidth() - (int) r.getWidth()) / 2;
-                    int y = (getHeight() - (int) r.getHeight()) / 2 + fm.getAscent();
-                    
-                    g2d.setColor(TITLE_COLOR);
-                    g2d.drawString(numberText, x, y);
-                }
-            }
-        };
-        
-        button.setPreferredSize(new Dimension(100, 100));
-        button.setContentAreaFilled(false);
-        button.setBorderPainted(false);
-        button.setFocusPainted(false);
-        button.setCursor(new Cursor(Cursor.HAND_CURSOR));
-        button.addActionListener(e -> handleCardClick(card, button));
-        
-        return button;
+    private long takeSeed() {
+        long seed = nextSeed;
+        nextSeed = random.nextLong();
+        return seed;
     }
     
-    private void createCardPairs() {
-        // We'll create 8 pairs (16 cards) with 8 different candy images
-        for (int i = 0; i < 8; i++) {
-            Image candyImage = candyImages[i];
-            cards.add(new Card(candyImage, i));
-            cards.add(new Card(candyImage, i));
+    private void handleCardClick(int cell) {
+        pendingInputNanos = System.nanoTime();
+        logic.click(cell);
+    }
+    
+    // Called on the logic thread after each change; at most one refresh is
+    // queued on the EDT however fast the changes come
+    private void requestRefresh() {
+        if (refreshQueued.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::refresh);
         }
     }
     
-    // The rest of the methods remain mostly unchanged
-    private void handleCardClick(Card card, JButton button) {
-        if (card.isMatched() || card.isRevealed() || secondSelectedCard != null || timeRemaining <= 0) {
+    // Bring the window up to the latest published state
+    private void refresh() {
+        refreshQueued.set(false);
+        BoardState state = logic.latest();
+        if (state == shownState) {
             return;
         }
-        
-        // Play flip sound when card is clicked
-        playSound(flipSound);
-        
-        card.setRevealed(true);
-        button.repaint(); // Repaint to show the candy image
-        
-        if (firstSelectedCard == null) {
-            firstSelectedCard = card;
-        } else {
-            secondSelectedCard = card;
-            checkForMatch();
+        if (state.getDeal() != shownState.getDeal()) {
+            setTitle("Candy Memory Game - board " + Long.toHexString(state.getSeed()));
+            resultLabel.setText("");
+            resultLabel.setForeground(Color.BLACK);
         }
-        
-        updateStatsLabels();
-    }
-    
-    private void checkForMatch() {
-        // Compare the candy image indices of the two selected cards
-        boolean isMatch = firstSelectedCard.getCandyImageIndex() == secondSelectedCard.getCandyImageIndex();
-        
-        if (isMatch) {
-            // Play match sound
-            playSound(matchSound);
-            
-            firstSelectedCard.setMatched(true);
-            secondSelectedCard.setMatched(true);
-            pairsFound++;
-            if (pairsFound >= 8) { // Win condition: 8 pairs matched
-                gameTimer.stop();
-                showResult(true);
-            }
-            
-            firstSelectedCard = null;
-            secondSelectedCard = null;
-        } else {
-            javax.swing.Timer flipBackTimer = new javax.swing.Timer(1000, e -> {
-                firstSelectedCard.setRevealed(false);
-                secondSelectedCard.setRevealed(false);
-                firstSelectedCard.getButton().repaint();
-                secondSelectedCard.getButton().repaint();
-                
-                firstSelectedCard = null;
-                secondSelectedCard = null;
-            });
-            flipBackTimer.setRepeats(false);
-            flipBackTimer.start();
+        if (pendingInputNanos != 0) {
+            board.markInput(pendingInputNanos);
+            pendingInputNanos = 0;
         }
-        
-        updateStatsLabels();
+        board.show(state);
+        updateTimerLabel(state);
+        updateStatsLabels(state);
+        shownState = state;
     }
     
-    private void checkGameEnd() {
-        if (pairsFound < 8) {
-            showResult(false);
-        }
+    // On the logic thread: count, record and report a finished game
+    private void finishGame(MemoryGameEngine engine, boolean won) {
+        (won ? GAMES_WON : GAMES_LOST).increment();
+        FlightEvents.gameOutcome(won, engine.getSeed(), engine.getPairsFound(), engine.getPairCount(),
+            engine.getTimeRemaining());
+        playSound(won ? winSound : loseSound);
+        int rank = recordGame(engine, won);
+        SwingUtilities.invokeLater(() -> showResult(won, rank));
     }
     
-    private void showResult(boolean won) {
+    private void showResult(boolean won, int rank) {
         if (won) {
-            playSound(winSound);
-            resultLabel.setText("YOU WON! 🎉");
+            // Mention a place in this board's top ten
+            resultLabel.setText(rank >= 0 && rank < 10 ? "YOU WON! 🎉 #" + (rank + 1) : "YOU WON! 🎉");
             resultLabel.setForeground(new Color(0, 150, 0)); // Green
         } else {
-            playSound(loseSound);
             resultLabel.setText("YOU LOST! 😢");
             resultLabel.setForeground(Color.RED);
         }
     }
     
-    private void updateTimerLabel() {
+    // Returns the game's place on this board's leaderboard, or -1
+    private int recordGame(MemoryGameEngine engine, boolean won) {
+        StatsStore store = statsStore;
+        if (store == null) {
+            return -1;
+        }
+        return store.record(new StatsStore.Game(PLAYER, System.currentTimeMillis(), engine.getSeed(), rows, cols,
+            gameDuration, won, engine.getTimeRemaining(), engine.getPairsFound(), engine.getMisses()));
+    }
+    
+    private void updateTimerLabel(BoardState state) {
+        int timeRemaining = state.getTimeRemaining();
         int minutes = timeRemaining / 60;
         int seconds = timeRemaining % 60;
         timerLabel.setText(String.format("⏱️ %d:%02d", minutes, seconds));
@@ -587,54 +621,95 @@ public class CandyMemoryGame extends JFrame {
         }
     }
     
-    private void updateStatsLabels() {
-        pairsLabel.setText(String.format("🍬 Pairs: %d/8", pairsFound));
+    private void updateStatsLabels(BoardState state) {
+        pairsLabel.setText(String.format("🍬 Pairs: %d/%d", state.getPairsFound(), state.getPairCount()));
     }
     
-    // Update the Card class to use images instead of colors
-    private static class Card {
-        private final Image candyImage;
-        private final int candyImageIndex;
-        private boolean matched;
-        private boolean revealed;
-        private JButton button;
-        private int number;
-        
-        public Card(Image candyImage, int candyImageIndex) {
-            this.candyImage = candyImage;
-            this.candyImageIndex = candyImageIndex;
-            this.matched = false;
-            this.revealed = false;
-            this.number = 0;
+    public static void main(String[] args) {
+        if (args.length >= 1 && args[0].equals("--replay")) {
+            try {
+                GameReplay.main(Arrays.copyOfRange(args, 1, args.length));
+            } catch (IOException e) {
+                System.out.println("Error replaying log: " + e.getMessage());
+            }
+            return;
         }
-        
-        public Image getCandyImage() { return candyImage; }
-        public int getCandyImageIndex() { return candyImageIndex; }
-        public boolean isMatched() { return matched; }
-        public boolean isRevealed() { return revealed; }
-        public JButton getButton() { return button; }
-        public int getNumber() { return number; }
-        
-        public void setMatched(boolean matched) { 
-            this.matched = matched;
-            if (button != null) {
-                button.setEnabled(!matched);
+        if (args.length >= 1 && args[0].equals("--analytics")) {
+            try {
+                GameAnalytics.main(Arrays.copyOfRange(args, 1, args.length));
+            } catch (IOException e) {
+                System.out.println("Error analysing replay logs: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+            return;
         }
-        
-        public void setRevealed(boolean revealed) { 
-            this.revealed = revealed;
+        if (args.length >= 1 && args[0].equals("--spectate")) {
+            try {
+                SpectatorRelay.main(Arrays.copyOfRange(args, 1, args.length));
+            } catch (IOException e) {
+                System.out.println("Error watching game: " + e.getMessage());
+            }
+            return;
         }
-        
-        public void setButton(JButton button) { this.button = button; }
-        public void setNumber(int number) { this.number = number; }
-    }
-    
-    public static void main(String[] args) {
+        if (args.length >= 1 && args[0].equals("--stats")) {
+            try {
+                StatsStore.main(Arrays.copyOfRange(args, 1, args.length));
+            } catch (IOException e) {
+                System.out.println("Error reading stats: " + e.getMessage());
+            }
+            return;
+        }
+        if (args.length >= 1 && args[0].equals("--tournament")) {
+            Metrics.startExporters();
+            Tournament.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length >= 1 && args[0].equals("--thumbnails")) {
+            // AWT is already initialized by now, so on a machine without a
+            // display this needs -Djava.awt.headless=true, or java BoardThumbnails
+            try {
+                BoardThumbnails.run(Arrays.copyOfRange(args, 1, args.length));
+            } catch (IOException e) {
+                System.out.println("Error writing thumbnails: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+        if (args.length >= 1 && args[0].equals("--simulate")) {
+            BoardSimulator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length >= 1 && (args[0].equals("--server") || args[0].equals("--loadgen"))) {
+            try {
+                String[] rest = Arrays.copyOfRange(args, 1, args.length);
+                if (args[0].equals("--server")) {
+                    GameServer.main(rest);
+                } else {
+                    LoadGenerator.main(rest);
+                }
+            } catch (IOException e) {
+                System.out.println("Error running game server: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+
+        StartupMetrics.mainStarted();
+        Metrics.startExporters();
         SwingUtilities.invokeLater(() -> {
             try {
                 UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
-                new CandyMemoryGame();
+                if (args.length >= 2) {
+                    int rows = Integer.parseInt(args[0]);
+                    int cols = Integer.parseInt(args[1]);
+                    int duration = args.length >= 3 ? Integer.parseInt(args[2]) : GAME_DURATION;
+                    new CandyMemoryGame(rows, cols, duration);
+                } else {
+                    new CandyMemoryGame();
+                }
             } catch (Exception e) {
                 e.printStackTrace();
             }
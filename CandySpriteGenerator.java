@@ -0,0 +1,172 @@
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.RoundRectangle2D;
+import java.util.SplittableRandom;
+
+// Procedural candies for boards with more pairs than there are candy images.
+// A candy is picked from its index by mixing a shape, a pattern, a hue and a
+// few jittered details, so neighbouring indices never share a shape and
+// pattern, and the hues walk the colour wheel by the golden angle so any run
+// of candies stays well spread. Everything comes from (seed, index): the same
+// candy looks the same in every game and on every machine.
+//
+// Candies are drawn as vector shapes straight into the card sprite at its
+// device resolution, so CardSpriteCache keeps them like any other face.
+final class CandySpriteGenerator {
+    private static final int SHAPES = 8;
+    private static final int PATTERNS = 5;
+    private static final float GOLDEN_RATIO_CONJUGATE = 0.618034f;
+    private static final float[] SATURATIONS = {0.75f, 0.55f, 0.9f};
+    private static final float[] BRIGHTNESSES = {0.95f, 0.8f};
+
+    // -Dcandy.spriteSeed=<n> gives a different, equally stable set of candies
+    static final long DEFAULT_SEED = Long.getLong("candy.spriteSeed", 0x5EED_CA4D7L);
+
+    private CandySpriteGenerator() {
+    }
+
+    // Draw candy number candy into the box at (x, y)
+    static void paint(Graphics2D g2d, long seed, int candy, int x, int y, int width, int height) {
+        SplittableRandom random = new SplittableRandom(seed ^ (candy * 0x9E3779B97F4A7C15L));
+        int shape = candy % SHAPES;
+        int pattern = (candy / SHAPES + (int) (seed & 0xFF)) % PATTERNS;
+        int shade = candy / (SHAPES * PATTERNS);
+
+        float hue = (((seed >>> 8) & 0xFFFF) / 65536f + candy * GOLDEN_RATIO_CONJUGATE) % 1f;
+        float saturation = SATURATIONS[shade % SATURATIONS.length];
+        float brightness = BRIGHTNESSES[(shade / SATURATIONS.length) % BRIGHTNESSES.length];
+        Color base = Color.getHSBColor(hue, saturation, brightness);
+        Color accent = random.nextBoolean()
+            ? Color.getHSBColor((hue + 0.5f) % 1f, saturation, brightness) // complementary
+            : Color.getHSBColor(hue, Math.min(1f, saturation + 0.2f), brightness * 0.6f); // deeper shade
+
+        AffineTransform saved = g2d.getTransform();
+        Shape savedClip = g2d.getClip();
+        Stroke savedStroke = g2d.getStroke();
+        // Lay out in a 100x100 box and scale to fit, keeping the candy round
+        int side = Math.min(width, height);
+        g2d.translate(x + (width - side) / 2.0, y + (height - side) / 2.0);
+        g2d.scale(side / 100.0, side / 100.0);
+        g2d.rotate(Math.toRadians(random.nextInt(-20, 21)), 50, 50);
+
+        Shape body = body(g2d, shape, base, accent);
+        g2d.setColor(base);
+        g2d.fill(body);
+
+        g2d.clip(body);
+        paintPattern(g2d, pattern, accent, random);
+
+        // Glossy highlight, placed a little differently on each candy
+        g2d.setColor(new Color(255, 255, 255, 110));
+        double hx = 24 + random.nextInt(12);
+        double hy = 20 + random.nextInt(10);
+        g2d.fill(new Ellipse2D.Double(hx, hy, 18 + random.nextInt(10), 10 + random.nextInt(8)));
+        g2d.setClip(savedClip);
+
+        g2d.setColor(base.darker().darker());
+        g2d.setStroke(new BasicStroke(2.5f));
+        g2d.draw(body);
+
+        g2d.setStroke(savedStroke);
+        g2d.setTransform(saved);
+    }
+
+    // The candy outline. Wrapped sweets and lollipops draw their wrapper ends
+    // or stick first, underneath the body.
+    private static Shape body(Graphics2D g2d, int shape, Color base, Color accent) {
+        switch (shape) {
+            case 0: // Round drop
+                return new Ellipse2D.Double(14, 14, 72, 72);
+            case 1: { // Wrapped sweet
+                g2d.setColor(accent);
+                Path2D ends = new Path2D.Double();
+                ends.moveTo(30, 50); ends.lineTo(4, 30); ends.lineTo(10, 50); ends.lineTo(4, 70); ends.closePath();
+                ends.moveTo(70, 50); ends.lineTo(96, 30); ends.lineTo(90, 50); ends.lineTo(96, 70); ends.closePath();
+                g2d.fill(ends);
+                return new Ellipse2D.Double(22, 28, 56, 44);
+            }
+            case 2: { // Lollipop
+                g2d.setColor(new Color(245, 240, 230));
+                g2d.fill(new RoundRectangle2D.Double(46, 56, 8, 40, 6, 6));
+                return new Ellipse2D.Double(20, 6, 60, 60);
+            }
+            case 3: // Square bonbon
+                return new RoundRectangle2D.Double(18, 18, 64, 64, 22, 22);
+            case 4: // Jelly bean
+                return new Ellipse2D.Double(8, 26, 84, 48);
+            case 5: { // Star
+                Path2D star = new Path2D.Double();
+                for (int i = 0; i < 10; i++) {
+                    double radius = i % 2 == 0 ? 44 : 20;
+                    double angle = Math.PI * i / 5 - Math.PI / 2;
+                    double px = 50 + radius * Math.cos(angle);
+                    double py = 53 + radius * Math.sin(angle);
+                    if (i == 0) {
+                        star.moveTo(px, py);
+                    } else {
+                        star.lineTo(px, py);
+                    }
+                }
+                star.closePath();
+                return star;
+            }
+            case 6: { // Heart
+                Path2D heart = new Path2D.Double();
+                heart.moveTo(50, 88);
+                heart.curveTo(10, 60, 8, 30, 28, 20);
+                heart.curveTo(40, 14, 50, 24, 50, 32);
+                heart.curveTo(50, 24, 60, 14, 72, 20);
+                heart.curveTo(92, 30, 90, 60, 50, 88);
+                heart.closePath();
+                return heart;
+            }
+            default: { // Diamond gem
+                Path2D gem = new Path2D.Double();
+                gem.moveTo(50, 8); gem.lineTo(88, 50); gem.lineTo(50, 92); gem.lineTo(12, 50);
+                gem.closePath();
+                return gem;
+            }
+        }
+    }
+
+    // Decoration inside the body; the caller has already clipped to it
+    private static void paintPattern(Graphics2D g2d, int pattern, Color accent, SplittableRandom random) {
+        g2d.setColor(accent);
+        switch (pattern) {
+            case 0: // Plain
+                break;
+            case 1: { // Diagonal stripes
+                g2d.setStroke(new BasicStroke(5 + random.nextInt(4)));
+                int step = 14 + random.nextInt(6);
+                for (int offset = -100; offset < 100; offset += step) {
+                    g2d.drawLine(offset, 100, offset + 100, 0);
+                }
+                break;
+            }
+            case 2: { // Dots
+                int step = 16 + random.nextInt(6);
+                int dot = 5 + random.nextInt(4);
+                for (int py = 4; py < 100; py += step) {
+                    for (int px = (py / step) % 2 == 0 ? 4 : 4 + step / 2; px < 100; px += step) {
+                        g2d.fillOval(px, py, dot, dot);
+                    }
+                }
+                break;
+            }
+            case 3: { // Swirl
+                g2d.setStroke(new BasicStroke(4 + random.nextInt(3)));
+                for (int r = 8; r < 60; r += 12) {
+                    g2d.drawArc(50 - r, 50 - r, 2 * r, 2 * r, r * 7, 240);
+                }
+                break;
+            }
+            default: { // Band across the middle
+                int band = 12 + random.nextInt(10);
+                g2d.fillRect(0, 50 - band / 2, 100, band);
+                break;
+            }
+        }
+    }
+}
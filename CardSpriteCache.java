@@ -0,0 +1,403 @@
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+// Pre-rendered card faces and backs. Sprites are keyed by (face or back,
+// card number or candy index, pixel size, DPI scale, render quality) and
+// drawn once into a compatible image, so painting a card is a single blit.
+// Entries are kept in LRU order and evicted once the cache goes over its
+// memory budget; a resize simply produces new keys and the old sizes age out.
+//
+// Candy artwork comes from an ImagePack while the candy index is within the
+// pack, then from the image array, and candies past both are generated
+// procedurally, so a board can have as many distinct pairs as it has cards.
+// Generated faces can be rendered ahead of time in parallel with
+// prefetchFaces. Pack images are decoded in the background as cards first
+// need them; until one arrives its face is drawn as a placeholder that is
+// not cached.
+final class CardSpriteCache {
+    private static final BasicStroke BORDER_STROKE = new BasicStroke(3);
+    private static final BasicStroke THIN_BORDER_STROKE = new BasicStroke(1.5f);
+    private static final Font NUMBER_FONT = new Font("Segoe UI", Font.BOLD, 26);
+    private static final Color PATTERN_COLOR = new Color(CandyMemoryGame.ACCENT_COLOR.getRed(),
+        CandyMemoryGame.ACCENT_COLOR.getGreen(), CandyMemoryGame.ACCENT_COLOR.getBlue(), 40);
+
+    private static final int KIND_BACK = 0;
+    private static final int KIND_FACE = 1;
+    // Stands in for artwork that is still being decoded
+    private static final Image LOADING = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+
+    private final long budgetBytes;
+    private final long spriteSeed = CandySpriteGenerator.DEFAULT_SEED;
+    private Image[] candyImages;
+    private volatile ImagePack imagePack;
+    private volatile Runnable imageListener;
+    private volatile int quality = RenderQualityGovernor.HIGH;
+
+    // Chained hash table keyed by the packed sprite key, plus an access-ordered
+    // doubly linked list for LRU eviction. Hand-rolled so lookups don't box keys.
+    private Entry[] table = new Entry[256];
+    private int size;
+    private final Entry head = new Entry(0, null, 0);
+    private long usedBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    CardSpriteCache(Image[] candyImages, long budgetBytes) {
+        this.candyImages = candyImages;
+        this.budgetBytes = budgetBytes;
+        head.before = head;
+        head.after = head;
+    }
+
+    // Swap the candy artwork; drops every cached sprite
+    synchronized void setCandyImages(Image[] candyImages) {
+        this.candyImages = candyImages;
+        clear();
+    }
+
+    // Take candy artwork from a pack, which must stay open while it is set.
+    // loaded is called on a pool thread whenever an image finishes decoding,
+    // e.g. to repaint; with a null listener images are decoded on the spot,
+    // so every sprite is final (for off-screen rendering). Drops every cached
+    // sprite.
+    synchronized void setImagePack(ImagePack pack, Runnable loaded) {
+        this.imageListener = loaded;
+        this.imagePack = pack;
+        clear();
+    }
+
+    // Render new sprites at a RenderQualityGovernor level; sprites of the
+    // other levels age out like old sizes
+    void setQuality(int quality) {
+        this.quality = quality;
+    }
+
+    synchronized void clear() {
+        Arrays.fill(table, null);
+        head.before = head;
+        head.after = head;
+        size = 0;
+        usedBytes = 0;
+    }
+
+    // Draw a card at (x, y) with the given logical size
+    void drawCard(Graphics2D g2d, boolean faceUp, int id, int x, int y, int width, int height) {
+        double scale = g2d.getTransform().getScaleX();
+        int kind = faceUp ? KIND_FACE : KIND_BACK;
+        Image sprite = getSprite(g2d.getDeviceConfiguration(), kind, id, width, height, scale);
+        // The sprite is already at device resolution, so under the DPI
+        // transform this maps one sprite pixel to one device pixel
+        g2d.drawImage(sprite, x, y, width, height, null);
+    }
+
+    // Draw a card squeezed horizontally about its centre, for flip animations.
+    // Uses the full-size sprite, so animating never adds cache entries.
+    void drawCard(Graphics2D g2d, boolean faceUp, int id, int x, int y, int width, int height, float widthScale) {
+        int drawWidth = Math.round(width * widthScale);
+        if (drawWidth <= 0) {
+            return;
+        }
+        double scale = g2d.getTransform().getScaleX();
+        int kind = faceUp ? KIND_FACE : KIND_BACK;
+        Image sprite = getSprite(g2d.getDeviceConfiguration(), kind, id, width, height, scale);
+        g2d.drawImage(sprite, x + (width - drawWidth) / 2, y, drawWidth, height, null);
+    }
+
+    private synchronized Image getSprite(GraphicsConfiguration gc, int kind, int id, int width, int height, double scale) {
+        int scaleKey = (int) Math.round(scale * 100);
+        int quality = this.quality;
+        long key = packKey(kind, quality, id, width, height, scaleKey);
+        int bucket = bucket(key);
+        for (Entry e = table[bucket]; e != null; e = e.next) {
+            if (e.key == key) {
+                hits++;
+                moveToFront(e);
+                return e.image;
+            }
+        }
+
+        misses++;
+        Image art = kind == KIND_FACE ? candyArt(id) : null;
+        BufferedImage image = render(gc, kind, quality, id, width, height, scaleKey / 100.0, art);
+        if (art != LOADING) {
+            // A placeholder is drawn again until the artwork is in
+            insert(key, bucket, image);
+        }
+        return image;
+    }
+
+    // Artwork for a candy: a pack image, an array image, LOADING, or null
+    // for a generated candy
+    private Image candyArt(int candy) {
+        ImagePack pack = imagePack;
+        if (pack != null && candy < pack.size() && !pack.isUnreadable(candy)) {
+            Runnable loaded = imageListener;
+            if (loaded == null) {
+                try {
+                    return pack.get(candy);
+                } catch (IOException | RuntimeException e) {
+                    System.out.println("Error loading candy image " + pack.getName(candy) + ": " + e.getMessage());
+                }
+            } else {
+                Image art = pack.getIfLoaded(candy);
+                if (art != null) {
+                    return art;
+                }
+                pack.loadAsync(candy, loaded);
+                return LOADING;
+            }
+        }
+        Image[] images = candyImages;
+        if (candy < images.length) {
+            return images[candy] != null ? images[candy] : LOADING;
+        }
+        return null;
+    }
+
+    // Render the faces of generated candies from first onwards, in parallel
+    // and outside the lock, so the first flips on a large board find them
+    // ready. Stops at half the budget to leave room for the backs. Meant to
+    // run off the EDT.
+    void prefetchFaces(GraphicsConfiguration gc, int first, int count, int width, int height, double scale) {
+        int scaleKey = (int) Math.round(scale * 100);
+        long spriteBytes = 4L * Math.max(1, (int) Math.ceil(width * scaleKey / 100.0))
+            * Math.max(1, (int) Math.ceil(height * scaleKey / 100.0));
+        int from = Math.max(first, candyImageCount());
+        int to = (int) Math.min(first + count, from + budgetBytes / 2 / spriteBytes);
+        int quality = this.quality;
+        IntStream.range(from, to).parallel().forEach(candy -> {
+            long key = packKey(KIND_FACE, quality, candy, width, height, scaleKey);
+            if (contains(key)) {
+                return;
+            }
+            BufferedImage image = render(gc, KIND_FACE, quality, candy, width, height, scaleKey / 100.0, null);
+            synchronized (this) {
+                if (!contains(key)) {
+                    insert(key, bucket(key), image);
+                }
+            }
+        });
+    }
+
+    // Candies below this have artwork rather than generated faces
+    private synchronized int candyImageCount() {
+        ImagePack pack = imagePack;
+        return Math.max(candyImages.length, pack != null ? pack.size() : 0);
+    }
+
+    private synchronized boolean contains(long key) {
+        for (Entry e = table[bucket(key)]; e != null; e = e.next) {
+            if (e.key == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void insert(long key, int bucket, BufferedImage image) {
+        Entry entry = new Entry(key, image, image.getWidth() * image.getHeight() * 4);
+        entry.next = table[bucket];
+        table[bucket] = entry;
+        linkFront(entry);
+        size++;
+        usedBytes += entry.bytes;
+        evictOverBudget(entry);
+        if (size > table.length) {
+            resize();
+        }
+    }
+
+    private static long packKey(int kind, int quality, int id, int width, int height, int scaleKey) {
+        return ((long) kind << 63)
+            | ((long) (quality & 0x3) << 61)
+            | ((long) (id & 0x7FFFF) << 42)
+            | ((long) (width & 0x3FFF) << 28)
+            | ((long) (height & 0x3FFF) << 14)
+            | (scaleKey & 0x3FFF);
+    }
+
+    private int bucket(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (table.length - 1);
+    }
+
+    private void evictOverBudget(Entry keep) {
+        while (usedBytes > budgetBytes && head.before != keep) {
+            Entry eldest = head.before;
+            unlink(eldest);
+            removeFromTable(eldest);
+            size--;
+            usedBytes -= eldest.bytes;
+            evictions++;
+            eldest.image.flush();
+        }
+    }
+
+    private void removeFromTable(Entry entry) {
+        int bucket = bucket(entry.key);
+        Entry prev = null;
+        for (Entry e = table[bucket]; e != null; prev = e, e = e.next) {
+            if (e == entry) {
+                if (prev == null) {
+                    table[bucket] = e.next;
+                } else {
+                    prev.next = e.next;
+                }
+                return;
+            }
+        }
+    }
+
+    private void resize() {
+        Entry[] old = table;
+        table = new Entry[old.length * 2];
+        for (Entry chain : old) {
+            for (Entry e = chain; e != null; ) {
+                Entry next = e.next;
+                int bucket = bucket(e.key);
+                e.next = table[bucket];
+                table[bucket] = e;
+                e = next;
+            }
+        }
+    }
+
+    private void moveToFront(Entry e) {
+        unlink(e);
+        linkFront(e);
+    }
+
+    private void linkFront(Entry e) {
+        e.after = head.after;
+        e.before = head;
+        head.after.before = e;
+        head.after = e;
+    }
+
+    private static void unlink(Entry e) {
+        e.before.after = e.after;
+        e.after.before = e.before;
+    }
+
+    private BufferedImage render(GraphicsConfiguration gc, int kind, int quality, int id, int width, int height,
+                                 double scale, Image art) {
+        int pixelWidth = Math.max(1, (int) Math.ceil(width * scale));
+        int pixelHeight = Math.max(1, (int) Math.ceil(height * scale));
+        BufferedImage image = gc != null
+            ? gc.createCompatibleImage(pixelWidth, pixelHeight, Transparency.TRANSLUCENT)
+            : new BufferedImage(pixelWidth, pixelHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+
+        Graphics2D g2d = image.createGraphics();
+        g2d.scale(scale, scale);
+        RenderQualityGovernor.applyHints(g2d, quality);
+        if (kind == KIND_FACE) {
+            renderFace(g2d, id, art, width, height);
+        } else {
+            renderBack(g2d, id, width, height);
+        }
+        g2d.dispose();
+        return image;
+    }
+
+    private void renderFace(Graphics2D g2d, int candy, Image art, int width, int height) {
+        RoundRectangle2D roundedRectangle = cardShape(width, height);
+
+        // Card front - show candy image
+        g2d.setColor(Color.WHITE);
+        g2d.fill(roundedRectangle);
+
+        int margin = Math.min(10, Math.min(width, height) / 10);
+        if (art == null) {
+            CandySpriteGenerator.paint(g2d, spriteSeed, candy, margin, margin, width - 2 * margin, height - 2 * margin);
+        } else if (art != LOADING) {
+            g2d.drawImage(art, margin, margin, width - 2 * margin, height - 2 * margin, null);
+        } else {
+            // Still loading: a faint candy outline as a placeholder
+            g2d.setColor(PATTERN_COLOR);
+            g2d.fillOval(margin * 2, margin * 2, width - 4 * margin, height - 4 * margin);
+        }
+
+        // Outer border
+        g2d.setColor(CandyMemoryGame.ACCENT_COLOR);
+        g2d.setStroke(borderStroke(width, height));
+        g2d.draw(roundedRectangle);
+    }
+
+    private static void renderBack(Graphics2D g2d, int number, int width, int height) {
+        RoundRectangle2D roundedRectangle = cardShape(width, height);
+
+        // Card back - show number
+        g2d.setColor(CandyMemoryGame.CARD_COLOR);
+        g2d.fill(roundedRectangle);
+
+        // Candy-like pattern, seeded by the card number so it stays put between repaints
+        Random random = new Random(number * 0x5DEECE66DL);
+        g2d.setColor(PATTERN_COLOR);
+        for (int i = 0; i < 5; i++) {
+            int size = (10 + random.nextInt(15)) * Math.min(100, Math.min(width, height)) / 100;
+            int x = (int) (random.nextDouble() * width);
+            int y = (int) (random.nextDouble() * height);
+            g2d.fillOval(x, y, size, size);
+        }
+
+        // Border
+        g2d.setColor(CandyMemoryGame.ACCENT_COLOR);
+        g2d.setStroke(borderStroke(width, height));
+        g2d.draw(roundedRectangle);
+
+        // Draw the card number
+        String numberText = String.valueOf(number);
+        g2d.setFont(numberFont(numberText, width, height));
+        FontMetrics fm = g2d.getFontMetrics();
+        Rectangle2D r = fm.getStringBounds(numberText, g2d);
+        int x = (width - (int) r.getWidth()) / 2;
+        int y = (height - (int) r.getHeight()) / 2 + fm.getAscent();
+
+        g2d.setColor(CandyMemoryGame.TITLE_COLOR);
+        g2d.drawString(numberText, x, y);
+    }
+
+    // The full-size look is kept for cards of about 100px and scaled down for
+    // the small cards of large boards
+    private static RoundRectangle2D cardShape(int width, int height) {
+        float arc = Math.min(20, Math.min(width, height) / 4f);
+        return new RoundRectangle2D.Float(0, 0, width - 1, height - 1, arc, arc);
+    }
+
+    private static BasicStroke borderStroke(int width, int height) {
+        return Math.min(width, height) >= 60 ? BORDER_STROKE : THIN_BORDER_STROKE;
+    }
+
+    private static Font numberFont(String text, int width, int height) {
+        float size = Math.min(NUMBER_FONT.getSize2D(), Math.min(height * 0.4f, (width - 6) * 1.6f / text.length()));
+        return size >= NUMBER_FONT.getSize2D() ? NUMBER_FONT : NUMBER_FONT.deriveFont(Math.max(6f, size));
+    }
+
+    synchronized int getSize() { return size; }
+    synchronized long getUsedBytes() { return usedBytes; }
+    synchronized long getHits() { return hits; }
+    synchronized long getMisses() { return misses; }
+    synchronized long getEvictions() { return evictions; }
+
+    private static final class Entry {
+        final long key;
+        final BufferedImage image;
+        final int bytes;
+        Entry next;
+        Entry before;
+        Entry after;
+
+        Entry(long key, BufferedImage image, int bytes) {
+            this.key = key;
+            this.image = image;
+            this.bytes = bytes;
+        }
+    }
+}
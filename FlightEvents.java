@@ -0,0 +1,161 @@
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+// Custom JDK Flight Recorder events for the game's hot paths, so a recording
+// (-XX:StartFlightRecording) shows clicks, slow paints, EDT queue delays,
+// sound triggers, game outcomes and render quality changes next to GC and thread activity. Each
+// helper checks whether its event type is enabled before creating the event,
+// so with no recording running they cost a field read.
+final class FlightEvents {
+    private static final String CATEGORY = "Candy Memory Game";
+    // Paints shorter than this are too common and too cheap to be worth recording
+    private static final long PAINT_THRESHOLD_NANOS = 1_000_000L;
+
+    private FlightEvents() {
+    }
+
+    @Name("candy.CardClick")
+    @Label("Card Click")
+    @Category(CATEGORY)
+    static final class CardClick extends Event {
+        @Label("Cell")
+        int cell;
+        @Label("Result")
+        String result;
+        @Label("Handling Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long handlingTime;
+    }
+
+    @Name("candy.Paint")
+    @Label("Paint")
+    @Category(CATEGORY)
+    static final class Paint extends Event {
+        @Label("Component")
+        String component;
+        @Label("Paint Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long paintTime;
+    }
+
+    @Name("candy.EdtQueueDelay")
+    @Label("EDT Queue Delay")
+    @Category(CATEGORY)
+    static final class EdtQueueDelay extends Event {
+        @Label("Delay")
+        @Timespan(Timespan.NANOSECONDS)
+        long delay;
+    }
+
+    @Name("candy.SoundTrigger")
+    @Label("Sound Trigger")
+    @Category(CATEGORY)
+    static final class SoundTrigger extends Event {
+        @Label("Sound")
+        int sound;
+        @Label("Trigger Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+    }
+
+    @Name("candy.GameOutcome")
+    @Label("Game Outcome")
+    @Category(CATEGORY)
+    static final class GameOutcome extends Event {
+        @Label("Won")
+        boolean won;
+        @Label("Board Seed")
+        String seed;
+        @Label("Pairs Found")
+        int pairsFound;
+        @Label("Pairs")
+        int pairCount;
+        @Label("Seconds Left")
+        int secondsLeft;
+    }
+
+    @Name("candy.QualityChange")
+    @Label("Render Quality Change")
+    @Category(CATEGORY)
+    static final class QualityChange extends Event {
+        @Label("From")
+        String from;
+        @Label("To")
+        String to;
+        @Label("Reason")
+        String reason;
+        @Label("Window Paint Time (p75)")
+        @Timespan(Timespan.NANOSECONDS)
+        long paintTime;
+    }
+
+    private static final EventType CARD_CLICK = EventType.getEventType(CardClick.class);
+    private static final EventType PAINT = EventType.getEventType(Paint.class);
+    private static final EventType EDT_QUEUE_DELAY = EventType.getEventType(EdtQueueDelay.class);
+    private static final EventType SOUND_TRIGGER = EventType.getEventType(SoundTrigger.class);
+    private static final EventType GAME_OUTCOME = EventType.getEventType(GameOutcome.class);
+    private static final EventType QUALITY_CHANGE = EventType.getEventType(QualityChange.class);
+
+    static void cardClick(int cell, String result, long handlingNanos) {
+        if (CARD_CLICK.isEnabled()) {
+            CardClick event = new CardClick();
+            event.cell = cell;
+            event.result = result;
+            event.handlingTime = handlingNanos;
+            event.commit();
+        }
+    }
+
+    static void paint(String component, long paintNanos) {
+        if (paintNanos >= PAINT_THRESHOLD_NANOS && PAINT.isEnabled()) {
+            Paint event = new Paint();
+            event.component = component;
+            event.paintTime = paintNanos;
+            event.commit();
+        }
+    }
+
+    static void edtQueueDelay(long delayNanos) {
+        if (EDT_QUEUE_DELAY.isEnabled()) {
+            EdtQueueDelay event = new EdtQueueDelay();
+            event.delay = delayNanos;
+            event.commit();
+        }
+    }
+
+    static void soundTrigger(int sound, long latencyNanos) {
+        if (SOUND_TRIGGER.isEnabled()) {
+            SoundTrigger event = new SoundTrigger();
+            event.sound = sound;
+            event.latency = latencyNanos;
+            event.commit();
+        }
+    }
+
+    static void gameOutcome(boolean won, long seed, int pairsFound, int pairCount, int secondsLeft) {
+        if (GAME_OUTCOME.isEnabled()) {
+            GameOutcome event = new GameOutcome();
+            event.won = won;
+            event.seed = Long.toHexString(seed);
+            event.pairsFound = pairsFound;
+            event.pairCount = pairCount;
+            event.secondsLeft = secondsLeft;
+            event.commit();
+        }
+    }
+
+    static void qualityChange(String from, String to, String reason, long paintNanos) {
+        if (QUALITY_CHANGE.isEnabled()) {
+            QualityChange event = new QualityChange();
+            event.from = from;
+            event.to = to;
+            event.reason = reason;
+            event.paintTime = paintNanos;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,527 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
+
+// Where players go wrong, from recorded games. Reads ReplayLog files and
+// keeps, per board layout (size and time limit): outcomes, time to the first
+// match and to a win, and how often each card position and each candy is
+// turned over and missed. A miss counts against both cards of the pair.
+// A game resumed after a restart (a RESTORE record) carries on the
+// unfinished game before it. If that game is not in the log, the resumed
+// one still counts, but without its times to the first match and to a win.
+//
+// Logs are read as streams, one record at a time, and each log is its own
+// parallel task with its own primitive counters, merged at the end, so
+// memory depends on the layouts, not on the number of games. Candies come
+// from dealing the game's seed again, only once the game is finished.
+//
+// Updates are incremental, like the StatsStore snapshot: a checkpoint file
+// holds the totals and how far into each log they go, and the next update
+// reads only what was appended since. A game still running at the end of a
+// log is left for the next update, which reads it again from its start.
+//
+// Checkpoint: "CMAS", version, logs with their offsets, layouts with their
+//             totals, CRC32C of everything before it
+final class GameAnalytics {
+    static final int MAGIC = 0x434D4153; // "CMAS"
+    static final int VERSION = 1;
+
+    private static final int REPORT_CARDS = 5;
+    private static final int MAX_HEATMAP_COLS = 16;
+
+    // Totals for one board size and time limit
+    static final class Layout {
+        final int rows;
+        final int cols;
+        final int duration;
+        long games;
+        long won;
+        long lost;
+        long abandoned;
+        long misses;
+        final LatencyHistogram firstMatchMicros = new LatencyHistogram();
+        final LatencyHistogram winMicros = new LatencyHistogram();
+        // Times each cell and each candy was turned face up, and was half of a miss
+        final long[] cellTurns;
+        final long[] cellMisses;
+        long[] candyTurns = new long[0];
+        long[] candyMisses = new long[0];
+
+        Layout(int rows, int cols, int duration) {
+            this.rows = rows;
+            this.cols = cols;
+            this.duration = duration;
+            this.cellTurns = new long[rows * cols];
+            this.cellMisses = new long[rows * cols];
+        }
+
+        private void ensureCandies(int count) {
+            if (candyTurns.length < count) {
+                candyTurns = Arrays.copyOf(candyTurns, count);
+                candyMisses = Arrays.copyOf(candyMisses, count);
+            }
+        }
+
+        void add(Layout other) {
+            games += other.games;
+            won += other.won;
+            lost += other.lost;
+            abandoned += other.abandoned;
+            misses += other.misses;
+            firstMatchMicros.add(other.firstMatchMicros);
+            winMicros.add(other.winMicros);
+            for (int cell = 0; cell < cellTurns.length; cell++) {
+                cellTurns[cell] += other.cellTurns[cell];
+                cellMisses[cell] += other.cellMisses[cell];
+            }
+            ensureCandies(other.candyTurns.length);
+            for (int candy = 0; candy < other.candyTurns.length; candy++) {
+                candyTurns[candy] += other.candyTurns[candy];
+                candyMisses[candy] += other.candyMisses[candy];
+            }
+        }
+    }
+
+    private final Map<Long, Layout> layouts = new HashMap<>();
+    // How far into each log (by absolute path) the totals go
+    private final Map<String, Long> offsets = new HashMap<>();
+
+    private static long layoutKey(int rows, int cols, int duration) {
+        return (long) rows << 48 | (long) cols << 32 | (duration & 0xFFFFFFFFL);
+    }
+
+    // Read what was appended to the logs since the last update. Returns the
+    // number of games added.
+    long update(List<Path> logs) {
+        List<LogScan> scans = logs.parallelStream()
+            .map(this::scan)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+        long games = 0;
+        for (LogScan scan : scans) {
+            for (Map.Entry<Long, Layout> entry : scan.layouts.entrySet()) {
+                Layout partial = entry.getValue();
+                layouts.computeIfAbsent(entry.getKey(), key -> new Layout(partial.rows, partial.cols, partial.duration))
+                    .add(partial);
+            }
+            offsets.put(scan.log, scan.committedOffset);
+            games += scan.games;
+        }
+        return games;
+    }
+
+    // On a pool thread; reads the layouts only to find the log's offset
+    private LogScan scan(Path path) {
+        String log = path.toAbsolutePath().normalize().toString();
+        long offset = offsets.getOrDefault(log, (long) ReplayReader.HEADER_BYTES);
+        LogScan scan = new LogScan(log, offset);
+        try {
+            long size = Files.size(path);
+            if (size < offset) {
+                System.out.println("Replay log " + path + " is shorter than last time; reading it from the start");
+                scan.committedOffset = ReplayReader.HEADER_BYTES;
+            }
+            if (size > scan.committedOffset) {
+                scan.read(path);
+            }
+            return scan;
+        } catch (IOException e) {
+            System.out.println("Error reading replay log " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // One log's games, read on one thread into counters of its own
+    private static final class LogScan {
+        final String log;
+        final Map<Long, Layout> layouts = new HashMap<>();
+        long committedOffset;
+        long games;
+
+        // Deals finished games again to find their candies
+        private MemoryGameEngine dealer;
+
+        // The game being read; layout is null between games
+        private Layout layout;
+        private long gameStart;
+        private long seed;
+        private int candyCount;
+        private long micros;
+        private long firstMatchMicros;
+        // Picked up from a RESTORE without its start, so its clock is unknown
+        private boolean partial;
+        private int firstCard;
+        private int[] turns = new int[64];
+        private int turnCount;
+        private int[] missed = new int[64];
+        private int missedCount;
+
+        LogScan(String log, long offset) {
+            this.log = log;
+            this.committedOffset = offset;
+        }
+
+        void read(Path path) throws IOException {
+            try (ReplayReader reader = new ReplayReader(path, committedOffset)) {
+                long recordStart = reader.getPosition();
+                while (reader.next()) {
+                    apply(reader, recordStart);
+                    recordStart = reader.getPosition();
+                    committedOffset = layout == null ? recordStart : gameStart;
+                }
+            }
+        }
+
+        private void apply(ReplayReader record, long recordStart) {
+            if (record.type == GameEventListener.NEW_GAME) {
+                if (layout != null) {
+                    // A new game before this one ended
+                    layout.abandoned++;
+                    finish();
+                }
+                start(record, recordStart);
+                return;
+            }
+            if (record.type == GameEventListener.RESTORE) {
+                if (layout != null && seed == record.seed && candyCount == record.candyCount
+                    && layout == layouts.get(layoutKey(record.rows, record.cols, record.duration))) {
+                    // The game in progress, carried on after a restart
+                    return;
+                }
+                if (layout != null) {
+                    layout.abandoned++;
+                    finish();
+                }
+                start(record, recordStart);
+                partial = true;
+                return;
+            }
+            if (layout == null) {
+                return;
+            }
+            micros += record.deltaMicros;
+            int cell = record.cell;
+            if (cell >= layout.cellTurns.length) {
+                return;
+            }
+            switch (record.type) {
+                case GameEventListener.CLICK:
+                    turns = push(turns, turnCount++, cell);
+                    if (firstCard == -1) {
+                        firstCard = cell;
+                    }
+                    break;
+                case GameEventListener.MATCH:
+                    if (firstMatchMicros == -1) {
+                        firstMatchMicros = micros;
+                    }
+                    firstCard = -1;
+                    break;
+                case GameEventListener.MISMATCH:
+                    if (firstCard != -1) {
+                        missed = push(missed, missedCount++, firstCard);
+                        missed = push(missed, missedCount++, cell);
+                    }
+                    firstCard = -1;
+                    break;
+                case GameEventListener.WIN:
+                    if (firstMatchMicros == -1) {
+                        firstMatchMicros = micros;
+                    }
+                    layout.won++;
+                    if (!partial) {
+                        layout.winMicros.record(micros);
+                    }
+                    finish();
+                    break;
+                case GameEventListener.TIME_UP:
+                    layout.lost++;
+                    finish();
+                    break;
+                default:
+                    // Ticks and flip-backs only move the clock
+                    break;
+            }
+        }
+
+        private void start(ReplayReader record, long recordStart) {
+            layout = layouts.computeIfAbsent(layoutKey(record.rows, record.cols, record.duration),
+                key -> new Layout(record.rows, record.cols, record.duration));
+            gameStart = recordStart;
+            seed = record.seed;
+            candyCount = record.candyCount;
+            micros = 0;
+            firstMatchMicros = -1;
+            partial = false;
+            firstCard = -1;
+            turnCount = 0;
+            missedCount = 0;
+        }
+
+        private void finish() {
+            if (dealer == null || dealer.getRows() != layout.rows || dealer.getCols() != layout.cols
+                || dealer.getCandyCount() != candyCount) {
+                dealer = new MemoryGameEngine(layout.rows, layout.cols, candyCount, layout.duration);
+            }
+            dealer.newGame(seed);
+            layout.ensureCandies(candyCount);
+
+            layout.games++;
+            layout.misses += missedCount / 2;
+            if (firstMatchMicros != -1 && !partial) {
+                layout.firstMatchMicros.record(firstMatchMicros);
+            }
+            for (int i = 0; i < turnCount; i++) {
+                layout.cellTurns[turns[i]]++;
+                layout.candyTurns[dealer.getCandy(turns[i])]++;
+            }
+            for (int i = 0; i < missedCount; i++) {
+                layout.cellMisses[missed[i]]++;
+                layout.candyMisses[dealer.getCandy(missed[i])]++;
+            }
+            games++;
+            layout = null;
+        }
+
+        private static int[] push(int[] array, int index, int value) {
+            if (index == array.length) {
+                array = Arrays.copyOf(array, array.length * 2);
+            }
+            array[index] = value;
+            return array;
+        }
+    }
+
+    // ---- Checkpoint ----
+
+    // The totals saved by save(), or empty ones if there are none or they cannot be read
+    static GameAnalytics load(Path path) {
+        GameAnalytics analytics = new GameAnalytics();
+        if (!Files.exists(path)) {
+            return analytics;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(path);
+            CRC32C crc = new CRC32C();
+            crc.update(bytes, 0, Math.max(0, bytes.length - 4));
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (bytes.length < 12 || in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+                throw new IOException("not an analytics checkpoint");
+            }
+            DataInputStream trailer = new DataInputStream(new ByteArrayInputStream(bytes, bytes.length - 4, 4));
+            if (trailer.readInt() != (int) crc.getValue()) {
+                throw new IOException("checksum mismatch");
+            }
+            int logCount = in.readInt();
+            for (int i = 0; i < logCount; i++) {
+                analytics.offsets.put(in.readUTF(), in.readLong());
+            }
+            int layoutCount = in.readInt();
+            for (int i = 0; i < layoutCount; i++) {
+                Layout layout = new Layout(in.readInt(), in.readInt(), in.readInt());
+                layout.games = in.readLong();
+                layout.won = in.readLong();
+                layout.lost = in.readLong();
+                layout.abandoned = in.readLong();
+                layout.misses = in.readLong();
+                layout.firstMatchMicros.readFrom(in);
+                layout.winMicros.readFrom(in);
+                for (int cell = 0; cell < layout.cellTurns.length; cell++) {
+                    layout.cellTurns[cell] = in.readLong();
+                    layout.cellMisses[cell] = in.readLong();
+                }
+                layout.ensureCandies(in.readInt());
+                for (int candy = 0; candy < layout.candyTurns.length; candy++) {
+                    layout.candyTurns[candy] = in.readLong();
+                    layout.candyMisses[candy] = in.readLong();
+                }
+                analytics.layouts.put(layoutKey(layout.rows, layout.cols, layout.duration), layout);
+            }
+            return analytics;
+        } catch (IOException e) {
+            System.out.println("Error reading analytics checkpoint, starting over: " + e.getMessage());
+            return new GameAnalytics();
+        }
+    }
+
+    // Written to a temporary file and moved over the old one
+    void save(Path path) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(offsets.size());
+        for (Map.Entry<String, Long> entry : offsets.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+        out.writeInt(layouts.size());
+        for (Layout layout : layouts.values()) {
+            out.writeInt(layout.rows);
+            out.writeInt(layout.cols);
+            out.writeInt(layout.duration);
+            out.writeLong(layout.games);
+            out.writeLong(layout.won);
+            out.writeLong(layout.lost);
+            out.writeLong(layout.abandoned);
+            out.writeLong(layout.misses);
+            layout.firstMatchMicros.writeTo(out);
+            layout.winMicros.writeTo(out);
+            for (int cell = 0; cell < layout.cellTurns.length; cell++) {
+                out.writeLong(layout.cellTurns[cell]);
+                out.writeLong(layout.cellMisses[cell]);
+            }
+            out.writeInt(layout.candyTurns.length);
+            for (int candy = 0; candy < layout.candyTurns.length; candy++) {
+                out.writeLong(layout.candyTurns[candy]);
+                out.writeLong(layout.candyMisses[candy]);
+            }
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temp, bytes.toByteArray());
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // ---- Report ----
+
+    void report(PrintStream out) {
+        List<Layout> sorted = new ArrayList<>(layouts.values());
+        sorted.sort((a, b) -> Long.compare(b.games, a.games));
+        long games = sorted.stream().mapToLong(layout -> layout.games).sum();
+        out.println(String.format("%d games on %d board layouts from %d logs", games, sorted.size(), offsets.size()));
+        for (Layout layout : sorted) {
+            if (layout.games == 0) {
+                continue;
+            }
+            out.println();
+            out.println(String.format("%dx%d, %d s: %d games, %.1f%% won, %.1f%% lost, %.1f%% abandoned, "
+                    + "%.1f misses per game", layout.rows, layout.cols, layout.duration, layout.games,
+                percent(layout.won, layout.games), percent(layout.lost, layout.games),
+                percent(layout.abandoned, layout.games), (double) layout.misses / layout.games));
+            out.println(String.format("  first match  p50 %.1f s, p90 %.1f s", seconds(layout.firstMatchMicros, 50),
+                seconds(layout.firstMatchMicros, 90)));
+            if (layout.won > 0) {
+                out.println(String.format("  win          p50 %.1f s, p90 %.1f s", seconds(layout.winMicros, 50),
+                    seconds(layout.winMicros, 90)));
+            }
+
+            StringBuilder cards = new StringBuilder("  most missed cards:");
+            for (int cell : mostMissed(layout.cellTurns, layout.cellMisses)) {
+                cards.append(String.format(" r%dc%d %.0f%%", cell / layout.cols + 1, cell % layout.cols + 1,
+                    percent(layout.cellMisses[cell], layout.cellTurns[cell])));
+            }
+            out.println(cards);
+            StringBuilder candies = new StringBuilder("  most missed candies:");
+            for (int candy : mostMissed(layout.candyTurns, layout.candyMisses)) {
+                candies.append(String.format(" #%d %.0f%%", candy + 1,
+                    percent(layout.candyMisses[candy], layout.candyTurns[candy])));
+            }
+            out.println(candies);
+
+            if (layout.cols <= MAX_HEATMAP_COLS) {
+                out.println("  miss rate by position (%):");
+                for (int row = 0; row < layout.rows; row++) {
+                    StringBuilder line = new StringBuilder("   ");
+                    for (int col = 0; col < layout.cols; col++) {
+                        int cell = row * layout.cols + col;
+                        line.append(layout.cellTurns[cell] == 0 ? "   -"
+                            : String.format(" %3.0f", percent(layout.cellMisses[cell], layout.cellTurns[cell])));
+                    }
+                    out.println(line);
+                }
+            }
+        }
+    }
+
+    // Indices with the highest miss rate, highest first
+    private static int[] mostMissed(long[] turns, long[] misses) {
+        int[] best = new int[Math.min(REPORT_CARDS, turns.length)];
+        int found = 0;
+        boolean[] taken = new boolean[turns.length];
+        for (; found < best.length; found++) {
+            int pick = -1;
+            for (int i = 0; i < turns.length; i++) {
+                if (!taken[i] && turns[i] > 0 && (pick == -1
+                    || misses[i] * turns[pick] > misses[pick] * turns[i])) {
+                    pick = i;
+                }
+            }
+            if (pick == -1) {
+                break;
+            }
+            taken[pick] = true;
+            best[found] = pick;
+        }
+        return Arrays.copyOf(best, found);
+    }
+
+    private static double percent(long part, long whole) {
+        return whole == 0 ? 0 : part * 100.0 / whole;
+    }
+
+    private static double seconds(LatencyHistogram micros, double percentile) {
+        return micros.getPercentile(percentile) / 1e6;
+    }
+
+    // --analytics [--follow seconds] [--checkpoint file] <replay logs...>:
+    // reads what is new in the logs, saves the totals and prints the report;
+    // --follow keeps doing so as games are added
+    static void main(String[] args) throws IOException, InterruptedException {
+        Path checkpoint = StatsStore.defaultDirectory().resolve("analytics.checkpoint");
+        long followMillis = 0;
+        List<Path> logs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--follow") && i + 1 < args.length) {
+                followMillis = (long) (Double.parseDouble(args[++i]) * 1000);
+            } else if (args[i].equals("--checkpoint") && i + 1 < args.length) {
+                checkpoint = Paths.get(args[++i]);
+            } else {
+                logs.add(Paths.get(args[i]));
+            }
+        }
+        if (logs.isEmpty()) {
+            System.out.println("Usage: java CandyMemoryGame --analytics [--follow seconds] [--checkpoint file] "
+                + "<replay logs...>");
+            return;
+        }
+
+        GameAnalytics analytics = load(checkpoint);
+        while (true) {
+            long start = System.nanoTime();
+            long added = analytics.update(logs);
+            analytics.save(checkpoint);
+            if (added > 0 || followMillis == 0) {
+                System.out.println(String.format("Read %d new games in %.1f ms", added,
+                    (System.nanoTime() - start) / 1e6));
+                analytics.report(System.out);
+            }
+            if (followMillis == 0) {
+                return;
+            }
+            Thread.sleep(followMillis);
+        }
+    }
+}
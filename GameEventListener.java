@@ -0,0 +1,16 @@
+// Receives every state change of a MemoryGameEngine. Events are passed as
+// primitives so that notifying listeners does not allocate; a listener can
+// read anything else it needs (seed, board size, counters) from the engine.
+interface GameEventListener {
+    int NEW_GAME = 1;   // cell is -1
+    int CLICK = 2;      // an accepted click on cell
+    int MATCH = 3;      // cell completed a pair
+    int MISMATCH = 4;   // cell did not match the first card
+    int FLIP_BACK = 5;  // cell is the second card of the pair turned over again
+    int TICK = 6;       // one second of the countdown elapsed; cell is -1
+    int WIN = 7;        // cell completed the last pair
+    int TIME_UP = 8;    // the countdown ran out; cell is -1
+    int RESTORE = 9;    // a saved game was put back in place of the last one; cell is -1
+
+    void onGameEvent(MemoryGameEngine engine, int type, int cell);
+}
@@ -0,0 +1,234 @@
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+// Runs a game's rules on one thread of its own. Clicks, new games, the
+// countdown and the flip-back are all commands executed in order on that
+// thread, which is the only one that ever touches the MemoryGameEngine;
+// engine listeners (replay log, saver, sounds, stats) run there too.
+//
+// After each command the engine is captured into an immutable BoardState and
+// published through an AtomicReference, so any thread can read the latest
+// board with a single volatile load, and the state listener is told a new one
+// is available. The Swing view coalesces those notices into one repaint, so a
+// slow paint never holds up the rules, and rule processing never waits for
+// the EDT.
+//
+// Clicks that arrive while a mismatched pair is waiting to flip back are not
+// lost: they are queued with the time they were made, a click on a card
+// already queued or already matched is dropped, and the rest are applied in
+// order right after the flip-back. A click that has waited longer than two
+// flip-back delays by the time its turn comes is dropped as stale rather
+// than landing long after it was made, which bounds input lag when clicks
+// come faster than pairs resolve. In fast mode a click during the wait flips
+// the pair back at once and is applied straight away.
+final class GameLogic implements GameEventListener {
+    private static final String[] CLICK_RESULTS = {"ignored", "first", "match", "mismatch", "win"};
+    private static final int INPUT_QUEUE_SIZE = 16;
+    private static final LatencyHistogram CLICK_HANDLING = Metrics.histogram("click.handle");
+    // From the click to the engine applying it, including any wait in the queue
+    private static final LatencyHistogram INPUT_DELAY = Metrics.histogram("input.delay");
+    private static final LongAdder INPUT_QUEUED = Metrics.counter("input.queued");
+    private static final LongAdder INPUT_APPLIED = Metrics.counter("input.applied");
+    private static final LongAdder INPUT_DROPPED = Metrics.counter("input.dropped");
+
+    private final MemoryGameEngine engine;
+    private final long flipBackNanos;
+    private final boolean fastFlip;
+    private final ExecutorService executor;
+    private final GameLoop clock;
+    private final int countdownTimer;
+    private final int flipBackTimer;
+    private final AtomicReference<BoardState> state = new AtomicReference<>();
+    private final Runnable stateListener;
+
+    // Confined to the logic thread
+    private long nextTickNanos;
+    private long deals;
+    // Clicks waiting for the flip-back, oldest at inputHead
+    private final int[] inputCells = new int[INPUT_QUEUE_SIZE];
+    private final long[] inputNanos = new long[INPUT_QUEUE_SIZE];
+    private int inputHead;
+    private int inputCount;
+
+    // stateListener is called on the logic thread after each publication and
+    // must only hand off, e.g. schedule a repaint. fastFlip lets a click cut
+    // the flip-back short.
+    GameLogic(MemoryGameEngine engine, long flipBackNanos, boolean fastFlip, Runnable stateListener) {
+        this.engine = engine;
+        this.flipBackNanos = flipBackNanos;
+        this.fastFlip = fastFlip;
+        this.stateListener = stateListener;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "candy-game-logic");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY + 1);
+            return thread;
+        });
+        this.clock = new GameLoop("candy-game-clock", executor, "logic.queue_delay");
+        this.countdownTimer = clock.addTimer(this::onCountdown);
+        this.flipBackTimer = clock.addTimer(() -> {
+            if (engine.flipBack()) {
+                publish();
+            }
+            applyQueuedInputs();
+        });
+        engine.addListener(this);
+        state.set(BoardState.capture(engine, null, deals));
+    }
+
+    // The most recently published board; never null
+    BoardState latest() {
+        return state.get();
+    }
+
+    // Add an engine listener; it will be called on the logic thread
+    void addListener(GameEventListener listener) {
+        executor.execute(() -> engine.addListener(listener));
+    }
+
+    void click(int cell) {
+        long now = System.nanoTime();
+        executor.execute(() -> handleInput(cell, now));
+    }
+
+    void newGame(long seed) {
+        executor.execute(() -> {
+            dropQueuedInputs();
+            engine.newGame(seed);
+            startCountdown();
+        });
+    }
+
+    // Resume the game saved at savePath if there is one in progress for this
+    // board, otherwise deal seed
+    void resumeOrNewGame(Path savePath, long seed) {
+        executor.execute(() -> {
+            dropQueuedInputs();
+            if (savePath == null || !GameSaver.resume(savePath, engine) || engine.isOver()) {
+                engine.newGame(seed);
+            }
+            startCountdown();
+        });
+    }
+
+    void close() {
+        clock.close();
+        executor.shutdown();
+    }
+
+    @Override
+    public void onGameEvent(MemoryGameEngine engine, int type, int cell) {
+        if (type == NEW_GAME || type == RESTORE) {
+            deals++;
+        }
+    }
+
+    private void handleInput(int cell, long madeNanos) {
+        boolean flippedBack = false;
+        if (engine.isAwaitingFlipBack() && fastFlip) {
+            // Resolve the mismatch now instead of waiting it out
+            clock.cancel(flipBackTimer);
+            flippedBack = engine.flipBack();
+        }
+        if (!engine.isAwaitingFlipBack() && inputCount == 0) {
+            // An ignored click publishes nothing, but the flip-back still has to be seen
+            if (!handleClick(cell, madeNanos) && flippedBack) {
+                publish();
+            }
+            return;
+        }
+        if (inputCount == INPUT_QUEUE_SIZE || engine.isMatched(cell) || isQueued(cell)) {
+            INPUT_DROPPED.increment();
+            return;
+        }
+        int slot = (inputHead + inputCount++) % INPUT_QUEUE_SIZE;
+        inputCells[slot] = cell;
+        inputNanos[slot] = madeNanos;
+        INPUT_QUEUED.increment();
+    }
+
+    private boolean isQueued(int cell) {
+        for (int i = 0; i < inputCount; i++) {
+            if (inputCells[(inputHead + i) % INPUT_QUEUE_SIZE] == cell) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // In order, until one of them leaves another pair waiting to flip back
+    private void applyQueuedInputs() {
+        while (inputCount > 0 && !engine.isAwaitingFlipBack()) {
+            int cell = inputCells[inputHead];
+            long madeNanos = inputNanos[inputHead];
+            inputHead = (inputHead + 1) % INPUT_QUEUE_SIZE;
+            inputCount--;
+            if (System.nanoTime() - madeNanos > 2 * flipBackNanos) {
+                INPUT_DROPPED.increment();
+            } else {
+                handleClick(cell, madeNanos);
+            }
+        }
+        if (engine.isOver()) {
+            dropQueuedInputs();
+        }
+    }
+
+    private void dropQueuedInputs() {
+        INPUT_DROPPED.add(inputCount);
+        inputHead = 0;
+        inputCount = 0;
+    }
+
+    // True if the click changed the board and it was published
+    private boolean handleClick(int cell, long madeNanos) {
+        long start = System.nanoTime();
+        int result = engine.click(cell);
+        if (result == MemoryGameEngine.CLICK_MISMATCH) {
+            // Hide the pair again after a moment
+            clock.schedule(flipBackTimer, flipBackNanos);
+        } else if (result == MemoryGameEngine.CLICK_WIN) {
+            clock.cancel(countdownTimer);
+        }
+        if (result != MemoryGameEngine.CLICK_IGNORED) {
+            publish();
+            long end = System.nanoTime();
+            CLICK_HANDLING.record(end - start);
+            INPUT_DELAY.record(end - madeNanos);
+            INPUT_APPLIED.increment();
+        } else {
+            INPUT_DROPPED.increment();
+        }
+        FlightEvents.cardClick(cell, CLICK_RESULTS[result], System.nanoTime() - start);
+        return result != MemoryGameEngine.CLICK_IGNORED;
+    }
+
+    private void startCountdown() {
+        clock.cancel(flipBackTimer);
+        nextTickNanos = System.nanoTime() + GameLoop.SECOND_NANOS;
+        clock.scheduleAt(countdownTimer, nextTickNanos);
+        publish();
+    }
+
+    // Ticks are due on whole seconds from the start of the game, so a late
+    // wakeup catches up on every second it missed instead of drifting
+    private void onCountdown() {
+        long now = System.nanoTime();
+        while (!engine.isOver() && now - nextTickNanos >= 0) {
+            engine.tick();
+            nextTickNanos += GameLoop.SECOND_NANOS;
+        }
+        if (!engine.isOver()) {
+            clock.scheduleAt(countdownTimer, nextTickNanos);
+        }
+        publish();
+    }
+
+    private void publish() {
+        state.set(BoardState.capture(engine, state.get(), deals));
+        stateListener.run();
+    }
+}
@@ -0,0 +1,182 @@
+import java.awt.EventQueue;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.LockSupport;
+
+// The game's one clock. Timers are registered once, up front, and armed with
+// absolute System.nanoTime deadlines, so a late wakeup delays one callback
+// but never shifts the ones after it. A single scheduler thread sleeps until
+// the earliest deadline, collects every timer due by then into a bitmask,
+// and posts one pre-allocated dispatch Runnable to the EDT. A timer never
+// runs before its deadline, so a task can take "now - deadline >= 0" as a
+// given. While that dispatch is still queued, newly due timers are folded
+// into it instead of posting again, so a busy EDT sees one queued timer event
+// at most rather than a backlog of stale ones.
+//
+// Timer tasks run on the EDT, or on the executor the loop was created with
+// (GameLogic runs the game's timers on its own thread this way). They are
+// plain Runnables and read the clock themselves; a repeating timer simply
+// re-arms itself from its own deadline.
+final class GameLoop {
+    static final long SECOND_NANOS = 1_000_000_000L;
+    // Cadence for timers that drive animation frames
+    static final long FRAME_NANOS = SECOND_NANOS / 60;
+    static final int MAX_TIMERS = 64;
+
+    private static final long IDLE = Long.MAX_VALUE;
+
+    private final Executor executor;
+    private final boolean onEdt;
+    private final LatencyHistogram queueDelay;
+
+    private final Object lock = new Object();
+    private final Runnable[] tasks = new Runnable[MAX_TIMERS];
+    private final long[] deadlines = new long[MAX_TIMERS];
+    private final Runnable dispatch = this::dispatch;
+    private final Thread thread;
+    private int timerCount;
+
+    // Guarded by lock
+    private long dueMask;
+    private boolean dispatchQueued;
+    private long postedNanos;
+    private long wakeAt = IDLE;
+    private boolean running = true;
+
+    // Timers run on the EDT
+    GameLoop(String name) {
+        this(name, EventQueue::invokeLater, true, "edt.queue_delay");
+    }
+
+    // Timers run on executor; its queue delay goes to the named histogram
+    GameLoop(String name, Executor executor, String queueDelayMetric) {
+        this(name, executor, false, queueDelayMetric);
+    }
+
+    private GameLoop(String name, Executor executor, boolean onEdt, String queueDelayMetric) {
+        this.executor = executor;
+        this.onEdt = onEdt;
+        this.queueDelay = Metrics.histogram(queueDelayMetric);
+        Arrays.fill(deadlines, IDLE);
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY + 1);
+        thread.start();
+    }
+
+    // Register a task and return its timer id. The timer starts disarmed.
+    int addTimer(Runnable task) {
+        synchronized (lock) {
+            if (timerCount == MAX_TIMERS) {
+                throw new IllegalStateException("Too many timers");
+            }
+            tasks[timerCount] = task;
+            return timerCount++;
+        }
+    }
+
+    // Arm a timer for an absolute System.nanoTime deadline, replacing any
+    // earlier one. Does not allocate.
+    void scheduleAt(int timer, long deadlineNanos) {
+        synchronized (lock) {
+            deadlines[timer] = deadlineNanos;
+            if (deadlineNanos < wakeAt) {
+                wakeAt = deadlineNanos;
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    void schedule(int timer, long delayNanos) {
+        scheduleAt(timer, System.nanoTime() + delayNanos);
+    }
+
+    // Disarm a timer; a run that is already due but not yet dispatched is dropped too
+    void cancel(int timer) {
+        synchronized (lock) {
+            deadlines[timer] = IDLE;
+            dueMask &= ~(1L << timer);
+        }
+    }
+
+    boolean isScheduled(int timer) {
+        synchronized (lock) {
+            return deadlines[timer] != IDLE || (dueMask & (1L << timer)) != 0;
+        }
+    }
+
+    void close() {
+        synchronized (lock) {
+            running = false;
+        }
+        LockSupport.unpark(thread);
+    }
+
+    private void run() {
+        while (true) {
+            long now = System.nanoTime();
+            boolean post = false;
+            long sleepUntil;
+            synchronized (lock) {
+                if (!running) {
+                    return;
+                }
+                long earliest = IDLE;
+                for (int i = 0; i < timerCount; i++) {
+                    long deadline = deadlines[i];
+                    if (deadline == IDLE) {
+                        continue;
+                    }
+                    if (deadline - now <= 0) {
+                        dueMask |= 1L << i;
+                        deadlines[i] = IDLE;
+                    } else if (deadline < earliest) {
+                        earliest = deadline;
+                    }
+                }
+                if (dueMask != 0 && !dispatchQueued) {
+                    dispatchQueued = true;
+                    postedNanos = System.nanoTime();
+                    post = true;
+                }
+                wakeAt = earliest;
+                sleepUntil = earliest;
+            }
+
+            if (post) {
+                executor.execute(dispatch);
+            }
+            if (sleepUntil == IDLE) {
+                LockSupport.park(this);
+            } else {
+                LockSupport.parkNanos(this, sleepUntil - System.nanoTime());
+            }
+        }
+    }
+
+    // On the EDT (or the executor): run everything that came due since the
+    // last dispatch. Bits are taken one at a time so a task can still cancel
+    // a later one. How long the dispatch sat in the queue is the queue delay.
+    private void dispatch() {
+        long delay;
+        synchronized (lock) {
+            delay = System.nanoTime() - postedNanos;
+        }
+        queueDelay.record(delay);
+        if (onEdt) {
+            FlightEvents.edtQueueDelay(delay);
+        }
+        while (true) {
+            int timer;
+            synchronized (lock) {
+                if (dueMask == 0) {
+                    dispatchQueued = false;
+                    return;
+                }
+                timer = Long.numberOfTrailingZeros(dueMask);
+                dueMask &= dueMask - 1;
+            }
+            tasks[timer].run();
+        }
+    }
+}
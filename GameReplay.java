@@ -0,0 +1,155 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Rebuilds recorded games from a ReplayLog. Each game is dealt again from its
+// seed, and the recorded clicks, flip-backs and ticks are fed to a fresh
+// engine as fast as they can be read. The outcomes the engine produces are
+// checked against the recorded ones, so a log that does not reproduce is
+// reported rather than silently trusted.
+//
+// A resumed game is put back from the snapshot in its RESTORE record. When
+// it carries on the unfinished game before it, the two count as one game.
+final class GameReplay implements GameEventListener {
+    private final PrintStream out;
+    private MemoryGameEngine engine;
+
+    // Events produced by the replaying engine, waiting to be checked against the log
+    private final int[] producedTypes = new int[16];
+    private final int[] producedCells = new int[16];
+    private int producedHead;
+    private int producedCount;
+
+    private int games;
+    private long events;
+    private int divergentGames;
+    private boolean gameDiverged;
+    private boolean gameResumed;
+    private long gameMicros;
+
+    GameReplay(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void onGameEvent(MemoryGameEngine source, int type, int cell) {
+        int slot = (producedHead + producedCount) % producedTypes.length;
+        producedTypes[slot] = type;
+        producedCells[slot] = cell;
+        producedCount++;
+    }
+
+    void replay(Path file) throws IOException {
+        long started = System.nanoTime();
+        try (ReplayReader reader = new ReplayReader(file)) {
+            while (reader.next()) {
+                events++;
+                apply(reader);
+            }
+            finishGame();
+            if (reader.isTruncated()) {
+                out.println("Log ends with a partial record");
+            }
+        }
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        out.println(String.format("Replayed %d games (%d events) in %d ms; %d did not reproduce",
+            games, events, elapsedMillis, divergentGames));
+    }
+
+    private void apply(ReplayReader record) {
+        switch (record.type) {
+            case NEW_GAME:
+                startGame(record);
+                engine.newGame(record.seed);
+                break;
+            case RESTORE:
+                if (!isResuming(record)) {
+                    startGame(record);
+                }
+                gameResumed = true;
+                producedCount = 0;
+                try {
+                    // A snapshot that does not restore produces no RESTORE event, which is caught below
+                    GameSnapshot.read(ByteBuffer.wrap(record.snapshot, 0, record.snapshotLength), engine);
+                } catch (IOException e) {
+                    out.println("Bad snapshot in game " + games + ": " + e.getMessage());
+                }
+                break;
+            case CLICK:
+                engine.click(record.cell);
+                break;
+            case FLIP_BACK:
+                engine.flipBack();
+                break;
+            case TICK:
+                engine.tick();
+                break;
+            default:
+                // MATCH, MISMATCH, WIN and TIME_UP are outcomes, checked below
+                break;
+        }
+        if (engine == null) {
+            return;
+        }
+        gameMicros += record.deltaMicros;
+        expect(record.type, record.cell);
+    }
+
+    private void startGame(ReplayReader record) {
+        finishGame();
+        if (engine == null || !isSameLayout(record)) {
+            engine = new MemoryGameEngine(record.rows, record.cols, record.candyCount, record.duration);
+            engine.addListener(this);
+        }
+        producedCount = 0;
+        games++;
+        gameDiverged = false;
+        gameResumed = false;
+        gameMicros = 0;
+    }
+
+    private boolean isSameLayout(ReplayReader record) {
+        return engine.getRows() == record.rows && engine.getCols() == record.cols
+            && engine.getCandyCount() == record.candyCount && engine.getDuration() == record.duration;
+    }
+
+    // Whether a RESTORE carries on the game being replayed
+    private boolean isResuming(ReplayReader record) {
+        return engine != null && games > 0 && !engine.isOver() && isSameLayout(record)
+            && engine.getSeed() == record.seed;
+    }
+
+    private void expect(int type, int cell) {
+        if (producedCount == 0 || producedTypes[producedHead] != type || producedCells[producedHead] != cell) {
+            gameDiverged = true;
+            producedCount = 0;
+            return;
+        }
+        producedHead = (producedHead + 1) % producedTypes.length;
+        producedCount--;
+    }
+
+    private void finishGame() {
+        if (engine == null || games == 0) {
+            return;
+        }
+        if (gameDiverged) {
+            divergentGames++;
+        }
+        String outcome = engine.isWon() ? "won" : engine.getTimeRemaining() <= 0 ? "lost" : "unfinished";
+        out.println(String.format("game %d board %s %dx%d: %s, pairs %d/%d, %ds left, played %.1fs%s%s",
+            games, Long.toHexString(engine.getSeed()), engine.getRows(), engine.getCols(), outcome,
+            engine.getPairsFound(), engine.getPairCount(), engine.getTimeRemaining(),
+            gameMicros / 1e6, gameResumed ? ", resumed" : "", gameDiverged ? ", DID NOT REPRODUCE" : ""));
+    }
+
+    static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java CandyMemoryGame --replay <log file>");
+            return;
+        }
+        new GameReplay(System.out).replay(Paths.get(args[0]));
+    }
+}
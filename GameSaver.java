@@ -0,0 +1,153 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Keeps a GameSnapshot of the game in progress on disk, so a restarted game
+// picks up where it left off. Every game event re-encodes the snapshot into
+// a small buffer under a short lock (a few hundred bytes at most); a
+// background thread writes the latest one to a temporary file and moves it
+// over the old one, at most every SAVE_MILLIS, so the EDT never touches the
+// disk and a crash leaves either the old snapshot or the new one. Once the
+// game is won or lost the file is deleted, since there is nothing to resume.
+final class GameSaver implements GameEventListener, Closeable {
+    private static final long SAVE_MILLIS = 250;
+
+    private final Path path;
+    private final Path temp;
+    private final GameSnapshot snapshot = new GameSnapshot();
+    private final Object lock = new Object();
+    private final Thread writer;
+
+    // Guarded by lock
+    private ByteBuffer pending = ByteBuffer.allocate(0);
+    private ByteBuffer writing = ByteBuffer.allocate(0);
+    private boolean dirty;
+    private boolean closed;
+
+    private GameSaver(Path path) {
+        this.path = path;
+        this.temp = path.resolveSibling(path.getFileName() + ".tmp");
+        this.writer = new Thread(this::writeLoop, "candy-game-saver");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    static GameSaver open(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        return new GameSaver(path);
+    }
+
+    // The saved snapshot, restored onto the engine. False when there is none,
+    // it is for a different board, or it cannot be read.
+    static boolean resume(Path path, MemoryGameEngine engine) {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        try {
+            return GameSnapshot.read(ByteBuffer.wrap(Files.readAllBytes(path)), engine);
+        } catch (IOException e) {
+            System.out.println("Error resuming saved game: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void onGameEvent(MemoryGameEngine engine, int type, int cell) {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            int maxBytes = GameSnapshot.maxBytes(engine);
+            if (pending.capacity() < maxBytes) {
+                pending = ByteBuffer.allocate(maxBytes);
+                writing = ByteBuffer.allocate(maxBytes);
+            }
+            pending.clear();
+            // An empty snapshot means the game is over and the file goes
+            if (!engine.isOver()) {
+                snapshot.write(engine, pending);
+            }
+            pending.flip();
+            dirty = true;
+            lock.notify();
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            ByteBuffer latest;
+            synchronized (lock) {
+                while (!dirty && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!dirty) {
+                    return;
+                }
+                // Save the local: onGameEvent may reallocate both fields for a bigger board
+                latest = pending;
+                pending = writing;
+                writing = latest;
+                dirty = false;
+            }
+
+            try {
+                save(latest);
+            } catch (IOException e) {
+                System.out.println("Error saving game: " + e.getMessage());
+            }
+
+            // Later events in this window fold into one write
+            long next = System.currentTimeMillis() + SAVE_MILLIS;
+            synchronized (lock) {
+                long now;
+                while (!closed && (now = System.currentTimeMillis()) < next) {
+                    try {
+                        lock.wait(next - now);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private void save(ByteBuffer data) throws IOException {
+        if (!data.hasRemaining()) {
+            Files.deleteIfExists(path);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Write the last snapshot and stop
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notify();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Headless host for many concurrent games. Each connection is one session on
+// its own (virtual, where available) thread and plays on its own
+// MemoryGameEngine, so the rules match the Swing game exactly: the same time
+// limit, the same pairs and the same one second flip-back after a mismatch.
+// Instead of Swing timers each session keeps two deadlines, the next
+// countdown tick and the pending flip-back, and catches up on them from
+// System.nanoTime before handling every request.
+//
+// Line protocol, one request per line:
+//   NEW <rows> <cols> <seconds> [seed]  ->  OK <seed> <cards> <pairs>
+//   CLICK <cell>                        ->  FIRST|MATCH|MISMATCH|WIN <candy> <pairs> <millis left>
+//                                           or IGNORED <pairs> <millis left>
+//   STATE                               ->  STATE <pairs> <pairs total> <millis left> PLAYING|WON|LOST
+//   QUIT                                ->  closes the session
+// Malformed requests get ERR <reason>.
+final class GameServer implements Closeable {
+    static final int DEFAULT_PORT = 7645;
+    private static final long SECOND_NANOS = 1_000_000_000L;
+    private static final long FLIP_BACK_NANOS = SECOND_NANOS;
+    private static final int IDLE_TIMEOUT_MILLIS = 120_000;
+    private static final int MAX_GRID_SIZE = 100;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService sessions;
+    private final Thread acceptor;
+    private volatile boolean running = true;
+
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final AtomicInteger peakSessions = new AtomicInteger();
+    private final LongAdder gamesStarted = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+
+    GameServer(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 4096, InetAddress.getLoopbackAddress());
+        sessions = VirtualThreads.newPerTaskExecutor("candy-session");
+        acceptor = new Thread(this::acceptLoop, "candy-server-acceptor");
+        acceptor.start();
+    }
+
+    int getPort() { return serverSocket.getLocalPort(); }
+    int getActiveSessions() { return activeSessions.get(); }
+    int getPeakSessions() { return peakSessions.get(); }
+    long getGamesStarted() { return gamesStarted.sum(); }
+    long getRequests() { return requests.sum(); }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                sessions.execute(new Session(socket));
+            } catch (IOException e) {
+                if (running) {
+                    System.out.println("Error accepting connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        sessions.shutdownNow();
+    }
+
+    private final class Session implements Runnable {
+        private final Socket socket;
+        private final Random random = new Random();
+        private MemoryGameEngine engine;
+
+        // Deadlines on the System.nanoTime clock
+        private long nextTickNanos;
+        private long flipBackNanos;
+        private long endNanos;
+
+        Session(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            int active = activeSessions.incrementAndGet();
+            peakSessions.accumulateAndGet(active, Math::max);
+            try (Socket s = socket;
+                 BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+                 Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.US_ASCII))) {
+                s.setSoTimeout(IDLE_TIMEOUT_MILLIS);
+                String line;
+                while ((line = in.readLine()) != null) {
+                    requests.increment();
+                    if (line.equals("QUIT")) {
+                        break;
+                    }
+                    out.write(handle(line, System.nanoTime()));
+                    out.write('\n');
+                    out.flush();
+                }
+            } catch (SocketTimeoutException e) {
+                // Idle session, drop it
+            } catch (IOException e) {
+                // Client went away
+            } finally {
+                activeSessions.decrementAndGet();
+            }
+        }
+
+        private String handle(String line, long now) {
+            String[] parts = line.trim().split(" +");
+            try {
+                switch (parts[0]) {
+                    case "NEW":
+                        return newGame(parts, now);
+                    case "CLICK":
+                        return click(Integer.parseInt(parts[1]), now);
+                    case "STATE":
+                        return state(now);
+                    default:
+                        return "ERR unknown command";
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                return "ERR malformed request";
+            } catch (IllegalArgumentException e) {
+                return "ERR " + e.getMessage();
+            }
+        }
+
+        private String newGame(String[] parts, long now) {
+            int rows = Integer.parseInt(parts[1]);
+            int cols = Integer.parseInt(parts[2]);
+            int seconds = Integer.parseInt(parts[3]);
+            long seed = parts.length > 4 ? Long.parseUnsignedLong(parts[4], 16) : random.nextLong();
+            if (rows > MAX_GRID_SIZE || cols > MAX_GRID_SIZE || seconds <= 0) {
+                throw new IllegalArgumentException("unsupported board");
+            }
+            if (engine == null || engine.getRows() != rows || engine.getCols() != cols
+                || engine.getDuration() != seconds) {
+                engine = new MemoryGameEngine(rows, cols,
+                    MemoryGameEngine.candyCountFor(rows, cols, CandyMemoryGame.CANDY_COUNT), seconds);
+            }
+            engine.newGame(seed);
+            nextTickNanos = now + SECOND_NANOS;
+            endNanos = now + seconds * SECOND_NANOS;
+            gamesStarted.increment();
+            return "OK " + Long.toHexString(seed) + " " + engine.getCardCount() + " " + engine.getPairCount();
+        }
+
+        private String click(int cell, long now) {
+            if (engine == null) {
+                return "ERR no game";
+            }
+            if (cell < 0 || cell >= engine.getCardCount()) {
+                return "ERR no such cell";
+            }
+            advance(now);
+            int result = engine.click(cell);
+            String outcome;
+            switch (result) {
+                case MemoryGameEngine.CLICK_FIRST: outcome = "FIRST"; break;
+                case MemoryGameEngine.CLICK_MATCH: outcome = "MATCH"; break;
+                case MemoryGameEngine.CLICK_WIN: outcome = "WIN"; break;
+                case MemoryGameEngine.CLICK_MISMATCH:
+                    flipBackNanos = now + FLIP_BACK_NANOS;
+                    outcome = "MISMATCH";
+                    break;
+                default:
+                    return "IGNORED " + engine.getPairsFound() + " " + millisLeft(now);
+            }
+            return outcome + " " + engine.getCandy(cell) + " " + engine.getPairsFound() + " " + millisLeft(now);
+        }
+
+        private String state(long now) {
+            if (engine == null) {
+                return "ERR no game";
+            }
+            advance(now);
+            String status = engine.isWon() ? "WON" : engine.getTimeRemaining() <= 0 ? "LOST" : "PLAYING";
+            return "STATE " + engine.getPairsFound() + " " + engine.getPairCount() + " " + millisLeft(now) + " " + status;
+        }
+
+        // Apply every countdown tick and flip-back whose deadline has passed, in order
+        private void advance(long now) {
+            while (true) {
+                boolean ticking = !engine.isOver();
+                boolean flipping = engine.isAwaitingFlipBack();
+                if (flipping && flipBackNanos <= now && (!ticking || flipBackNanos <= nextTickNanos)) {
+                    engine.flipBack();
+                } else if (ticking && nextTickNanos <= now) {
+                    engine.tick();
+                    nextTickNanos += SECOND_NANOS;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private long millisLeft(long now) {
+            return engine.getTimeRemaining() <= 0 ? 0 : Math.max(0, (endNanos - now) / 1_000_000);
+        }
+    }
+
+    static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        GameServer server = new GameServer(port);
+        System.out.println("Candy game server on 127.0.0.1:" + server.getPort()
+            + (VirtualThreads.isAvailable() ? " (virtual threads)" : " (platform threads)"));
+        while (true) {
+            Thread.sleep(10_000);
+            System.out.println(String.format("sessions %d (peak %d), games %d, requests %d",
+                server.getActiveSessions(), server.getPeakSessions(), server.getGamesStarted(), server.getRequests()));
+        }
+    }
+}
@@ -0,0 +1,226 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+// Compact binary snapshot of a game in progress. The board itself is not
+// stored: the seed deals it again. What is stored is which pairs have been
+// matched, the one card that may be face up waiting for its partner, and the
+// counters. Revealed cards follow from those, and a mismatched pair waiting
+// to flip back is saved as already flipped back.
+//
+// Layout: version byte; rows, cols, candy count, duration (varints); seed
+// (8 bytes); time remaining, misses, first selected + 1 (varints); the
+// matched set; CRC32C of everything before it (4 bytes).
+//
+// The matched set is over candies when every pair has its own candy, and
+// over cells otherwise. It is a mode byte followed by whichever encoding is
+// shortest:
+//   GAPS:            member count, then the gap before each member (varints)
+//   COMPLEMENT_GAPS: the same for the non-members, for nearly finished boards
+//   BITMAP:          one bit per element, for boards about half done
+// So a fresh or nearly finished board takes a couple of dozen bytes at any
+// size, and a 100x100 board never takes more than about 650.
+//
+// Writing goes through an instance, which keeps its scratch set and checksum
+// between snapshots so that saving after every click does not allocate.
+final class GameSnapshot {
+    static final int VERSION = 1;
+
+    private static final int MODE_GAPS = 0;
+    private static final int MODE_COMPLEMENT_GAPS = 1;
+    private static final int MODE_BITMAP = 2;
+    private static final int HEADER_BYTES = 1 + 4 * 5 + 8 + 3 * 5 + 1;
+
+    private long[] members = new long[0];
+    private final CRC32C crc = new CRC32C();
+
+    // Largest snapshot of a game on this engine's board
+    static int maxBytes(MemoryGameEngine engine) {
+        return HEADER_BYTES + 5 + (domainSize(engine) + 7) / 8 + 10 + 4;
+    }
+
+    // Pairs are identified by candy when no candy is used twice
+    private static boolean pairsByCandy(MemoryGameEngine engine) {
+        return engine.getCandyCount() >= engine.getPairCount();
+    }
+
+    private static int domainSize(MemoryGameEngine engine) {
+        return pairsByCandy(engine) ? engine.getCandyCount() : engine.getCardCount();
+    }
+
+    // Append a snapshot of the engine's current game to a heap buffer with
+    // maxBytes(engine) free
+    void write(MemoryGameEngine engine, ByteBuffer out) {
+        int start = out.position();
+        out.put((byte) VERSION);
+        ReplayLog.putVarint(out, engine.getRows());
+        ReplayLog.putVarint(out, engine.getCols());
+        ReplayLog.putVarint(out, engine.getCandyCount());
+        ReplayLog.putVarint(out, engine.getDuration());
+        out.putLong(engine.getSeed());
+        ReplayLog.putVarint(out, engine.getTimeRemaining());
+        ReplayLog.putVarint(out, engine.getMisses());
+        ReplayLog.putVarint(out, engine.isAwaitingFlipBack() ? 0 : engine.getFirstSelected() + 1);
+
+        // Matched pairs, as members of the domain
+        boolean byCandy = pairsByCandy(engine);
+        int domain = domainSize(engine);
+        int words = (domain + 63) >>> 6;
+        if (members.length < words) {
+            members = new long[words];
+        }
+        Arrays.fill(members, 0, words, 0L);
+        int memberCount = 0;
+        for (int cell = 0; cell < engine.getCardCount(); cell++) {
+            if (engine.isMatched(cell)) {
+                int element = byCandy ? engine.getCandy(cell) : cell;
+                if ((members[element >>> 6] & (1L << element)) == 0) {
+                    members[element >>> 6] |= 1L << element;
+                    memberCount++;
+                }
+            }
+        }
+        putSet(out, members, memberCount, domain);
+
+        crc.reset();
+        crc.update(out.array(), out.arrayOffset() + start, out.position() - start);
+        out.putInt((int) crc.getValue());
+    }
+
+    private static void putSet(ByteBuffer out, long[] members, int memberCount, int domain) {
+        int bitmapBytes = (domain + 7) / 8;
+        boolean complement = memberCount > domain / 2;
+        int modeAt = out.position();
+        out.put((byte) (complement ? MODE_COMPLEMENT_GAPS : MODE_GAPS));
+        ReplayLog.putVarint(out, complement ? domain - memberCount : memberCount);
+        int previous = -1;
+        for (int element = 0; element < domain; element++) {
+            boolean member = (members[element >>> 6] & (1L << element)) != 0;
+            if (member != complement) {
+                ReplayLog.putVarint(out, element - previous - 1);
+                previous = element;
+                if (out.position() - modeAt - 1 > bitmapBytes) {
+                    break;
+                }
+            }
+        }
+        if (out.position() - modeAt - 1 > bitmapBytes) {
+            // Gaps came out longer than a plain bitmap
+            out.position(modeAt);
+            out.put((byte) MODE_BITMAP);
+            for (int i = 0; i < bitmapBytes; i++) {
+                out.put((byte) (members[i >>> 3] >>> ((i & 7) * 8)));
+            }
+        }
+    }
+
+    // Restore the snapshot in data onto the engine. Returns false, leaving the
+    // engine alone, when the snapshot is for a different board or rules;
+    // throws IOException when it is damaged.
+    static boolean read(ByteBuffer data, MemoryGameEngine engine) throws IOException {
+        ByteBuffer in = data.slice();
+        if (in.remaining() < 5) {
+            throw new IOException("Snapshot is truncated");
+        }
+        CRC32C crc = new CRC32C();
+        ByteBuffer covered = in.duplicate();
+        covered.limit(in.limit() - 4);
+        crc.update(covered);
+        if ((int) crc.getValue() != in.getInt(in.limit() - 4)) {
+            throw new IOException("Snapshot checksum mismatch");
+        }
+        in.limit(in.limit() - 4);
+
+        try {
+            if (in.get() != VERSION) {
+                return false;
+            }
+            if (getVarint(in) != engine.getRows() || getVarint(in) != engine.getCols()
+                || getVarint(in) != engine.getCandyCount() || getVarint(in) != engine.getDuration()) {
+                return false;
+            }
+            long seed = in.getLong();
+            int timeRemaining = (int) getVarint(in);
+            int misses = (int) getVarint(in);
+            int firstSelected = (int) getVarint(in) - 1;
+
+            int domain = domainSize(engine);
+            long[] members = getSet(in, domain);
+            if (in.hasRemaining()) {
+                throw new IOException("Trailing bytes in snapshot");
+            }
+
+            long[] matchedCells = new long[(engine.getCardCount() + 63) >>> 6];
+            if (pairsByCandy(engine)) {
+                // Deal the board on a scratch engine, which has no listeners,
+                // to find each candy's cells
+                MemoryGameEngine deal = new MemoryGameEngine(engine.getRows(), engine.getCols(),
+                    engine.getCandyCount(), engine.getDuration());
+                deal.newGame(seed);
+                for (int cell = 0; cell < deal.getCardCount(); cell++) {
+                    int candy = deal.getCandy(cell);
+                    if ((members[candy >>> 6] & (1L << candy)) != 0) {
+                        matchedCells[cell >>> 6] |= 1L << cell;
+                    }
+                }
+            } else {
+                System.arraycopy(members, 0, matchedCells, 0, matchedCells.length);
+            }
+            engine.restore(seed, matchedCells, firstSelected, misses, timeRemaining);
+            return true;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Snapshot is truncated");
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Snapshot does not fit its board: " + e.getMessage());
+        }
+    }
+
+    private static long[] getSet(ByteBuffer in, int domain) throws IOException {
+        long[] members = new long[(domain + 63) >>> 6];
+        int mode = in.get();
+        if (mode == MODE_BITMAP) {
+            for (int i = 0; i < (domain + 7) / 8; i++) {
+                members[i >>> 3] |= (in.get() & 0xFFL) << ((i & 7) * 8);
+            }
+            if ((domain & 63) != 0 && members[members.length - 1] >>> (domain & 63) != 0) {
+                throw new IOException("Snapshot set has bits past its end");
+            }
+            return members;
+        }
+        if (mode != MODE_GAPS && mode != MODE_COMPLEMENT_GAPS) {
+            throw new IOException("Unknown set encoding " + mode);
+        }
+        long count = getVarint(in);
+        long element = -1;
+        for (long i = 0; i < count; i++) {
+            element += getVarint(in) + 1;
+            if (element >= domain) {
+                throw new IOException("Snapshot set element out of range");
+            }
+            members[(int) element >>> 6] |= 1L << element;
+        }
+        if (mode == MODE_COMPLEMENT_GAPS) {
+            for (int i = 0; i < members.length; i++) {
+                members[i] = ~members[i];
+            }
+            if ((domain & 63) != 0) {
+                members[members.length - 1] &= (1L << (domain & 63)) - 1;
+            }
+        }
+        return members;
+    }
+
+    private static long getVarint(ByteBuffer in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,292 @@
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BaseMultiResolutionImage;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+// Candy artwork from a directory or a zip archive. Images are listed in
+// natural name order ("candy 2" before "candy 10") and decoded on demand,
+// several at once on the common pool, never on the EDT.
+//
+// Each decoded image becomes a multi-resolution image: a chain of display
+// compatible, premultiplied copies, each half the size of the one before,
+// from at most 512 pixels down to about 24. Java2D picks the smallest copy
+// that still covers the card at the current DPI scale, so a big photo is
+// never squeezed into a small card in one lossy step. Decoded chains are kept
+// in an LRU cache with a byte budget, so a large themed pack only holds the
+// images in use. A pack is meant to stay open for the whole session, so an
+// evicted image can be decoded again when a card needs it.
+final class ImagePack implements AutoCloseable {
+    private static final String[] EXTENSIONS = {".png", ".jpg", ".jpeg", ".gif", ".bmp"};
+    private static final int MAX_LEVEL_SIZE = 512;
+    private static final int MIN_LEVEL_SIZE = 24;
+
+    private final Path source;
+    private final ZipFile zip; // null for a directory
+    private final List<String> names;
+    private final long budgetBytes;
+
+    // Access-ordered, so iteration starts at the least recently used image
+    private final LinkedHashMap<Integer, CachedImage> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+    private long evictions;
+    // Images being decoded by loadAsync, and images that could not be decoded
+    private final BitSet loading = new BitSet();
+    private final BitSet unreadable = new BitSet();
+
+    private static final class CachedImage {
+        final Image image;
+        final long bytes;
+
+        CachedImage(Image image, long bytes) {
+            this.image = image;
+            this.bytes = bytes;
+        }
+    }
+
+    private ImagePack(Path source, ZipFile zip, List<String> names, long budgetBytes) {
+        this.source = source;
+        this.zip = zip;
+        this.names = names;
+        this.budgetBytes = budgetBytes;
+    }
+
+    // Open a directory or .zip of images; nothing is decoded yet
+    static ImagePack open(Path path, long budgetBytes) throws IOException {
+        List<String> names = new ArrayList<>();
+        ZipFile zip = null;
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> files = Files.list(path)) {
+                files.filter(Files::isRegularFile)
+                    .map(file -> file.getFileName().toString())
+                    .filter(ImagePack::isImage)
+                    .forEach(names::add);
+            }
+        } else {
+            zip = new ZipFile(path.toFile());
+            for (Iterator<? extends ZipEntry> it = zip.entries().asIterator(); it.hasNext(); ) {
+                ZipEntry entry = it.next();
+                if (!entry.isDirectory() && isImage(entry.getName())) {
+                    names.add(entry.getName());
+                }
+            }
+        }
+        names.sort(ImagePack::compareNatural);
+        return new ImagePack(path, zip, names, budgetBytes);
+    }
+
+    // Just the named images in a directory, in the order given; names with
+    // no file are skipped
+    static ImagePack files(Path directory, List<String> fileNames, long budgetBytes) {
+        List<String> names = new ArrayList<>();
+        for (String name : fileNames) {
+            if (Files.isRegularFile(directory.resolve(name))) {
+                names.add(name);
+            }
+        }
+        return new ImagePack(directory, null, names, budgetBytes);
+    }
+
+    int size() { return names.size(); }
+    String getName(int index) { return names.get(index); }
+    synchronized long getUsedBytes() { return usedBytes; }
+    synchronized long getEvictions() { return evictions; }
+    synchronized boolean isUnreadable(int index) { return unreadable.get(index); }
+
+    // The image if it is decoded and cached, otherwise null; never decodes
+    synchronized Image getIfLoaded(int index) {
+        CachedImage cached = cache.get(index);
+        return cached != null ? cached.image : null;
+    }
+
+    // Decode an image on the common pool, unless it is cached, already being
+    // decoded or unreadable; done runs once it is in the cache
+    void loadAsync(int index, Runnable done) {
+        synchronized (this) {
+            if (cache.containsKey(index) || unreadable.get(index) || loading.get(index)) {
+                return;
+            }
+            loading.set(index);
+        }
+        CompletableFuture.runAsync(() -> {
+            try {
+                get(index);
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Error loading candy image " + names.get(index) + ": " + e.getMessage());
+            } finally {
+                synchronized (this) {
+                    loading.clear(index);
+                }
+            }
+            done.run();
+        });
+    }
+
+    // Decode the first count images in parallel. An image that cannot be
+    // read is left null so the caller can substitute its own.
+    Image[] loadAll(int count) {
+        Image[] images = new Image[Math.min(count, names.size())];
+        IntStream.range(0, images.length).parallel().forEach(i -> {
+            try {
+                images[i] = get(i);
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Error loading candy image " + names.get(i) + ": " + e.getMessage());
+            }
+        });
+        return images;
+    }
+
+    // One image, from the cache or freshly decoded. An image that fails to
+    // decode is marked unreadable.
+    Image get(int index) throws IOException {
+        synchronized (this) {
+            CachedImage cached = cache.get(index);
+            if (cached != null) {
+                return cached.image;
+            }
+        }
+
+        BufferedImage decoded;
+        try (InputStream in = zip != null
+            ? zip.getInputStream(zip.getEntry(names.get(index)))
+            : Files.newInputStream(source.resolve(names.get(index)))) {
+            decoded = ImageIO.read(in);
+            if (decoded == null) {
+                throw new IOException("Unsupported image format");
+            }
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                unreadable.set(index);
+            }
+            throw e;
+        }
+        List<BufferedImage> levels = buildLevels(decoded);
+        long bytes = 0;
+        for (BufferedImage level : levels) {
+            bytes += (long) level.getWidth() * level.getHeight() * 4;
+        }
+        // Smallest first, as getResolutionVariant expects; the largest is the base
+        Image image = new BaseMultiResolutionImage(levels.size() - 1, levels.toArray(new Image[0]));
+
+        synchronized (this) {
+            CachedImage raced = cache.get(index);
+            if (raced != null) {
+                return raced.image;
+            }
+            cache.put(index, new CachedImage(image, bytes));
+            usedBytes += bytes;
+            evictOverBudget(index);
+        }
+        return image;
+    }
+
+    private void evictOverBudget(int keep) {
+        Iterator<Map.Entry<Integer, CachedImage>> it = cache.entrySet().iterator();
+        while (usedBytes > budgetBytes && it.hasNext()) {
+            Map.Entry<Integer, CachedImage> eldest = it.next();
+            if (eldest.getKey() == keep) {
+                continue;
+            }
+            usedBytes -= eldest.getValue().bytes;
+            evictions++;
+            it.remove();
+        }
+    }
+
+    // Halve the image down from MAX_LEVEL_SIZE to MIN_LEVEL_SIZE; returned smallest first
+    private static List<BufferedImage> buildLevels(BufferedImage decoded) {
+        GraphicsConfiguration gc = GraphicsEnvironment.isHeadless() ? null
+            : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+
+        BufferedImage level = copy(gc, decoded, decoded.getWidth(), decoded.getHeight());
+        while (Math.max(level.getWidth(), level.getHeight()) > MAX_LEVEL_SIZE) {
+            level = copy(gc, level, level.getWidth() / 2, level.getHeight() / 2);
+        }
+        List<BufferedImage> levels = new ArrayList<>();
+        levels.add(level);
+        while (Math.max(level.getWidth(), level.getHeight()) / 2 >= MIN_LEVEL_SIZE) {
+            level = copy(gc, level, level.getWidth() / 2, level.getHeight() / 2);
+            levels.add(0, level);
+        }
+        return levels;
+    }
+
+    private static BufferedImage copy(GraphicsConfiguration gc, BufferedImage from, int width, int height) {
+        width = Math.max(1, width);
+        height = Math.max(1, height);
+        BufferedImage to = gc != null
+            ? gc.createCompatibleImage(width, height, Transparency.TRANSLUCENT)
+            : new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g2d = to.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.drawImage(from, 0, 0, width, height, null);
+        g2d.dispose();
+        return to;
+    }
+
+    private static boolean isImage(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        for (String extension : EXTENSIONS) {
+            if (lower.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Case-insensitive, with runs of digits compared as numbers
+    private static int compareNatural(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            char ca = a.charAt(i);
+            char cb = b.charAt(j);
+            if (Character.isDigit(ca) && Character.isDigit(cb)) {
+                int startA = i;
+                int startB = j;
+                while (i < a.length() && Character.isDigit(a.charAt(i))) {
+                    i++;
+                }
+                while (j < b.length() && Character.isDigit(b.charAt(j))) {
+                    j++;
+                }
+                int order = Long.compare(Long.parseLong(a.substring(startA, Math.min(i, startA + 18))),
+                    Long.parseLong(b.substring(startB, Math.min(j, startB + 18))));
+                if (order != 0) {
+                    return order;
+                }
+            } else {
+                int order = Character.compare(Character.toLowerCase(ca), Character.toLowerCase(cb));
+                if (order != 0) {
+                    return order;
+                }
+                i++;
+                j++;
+            }
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (zip != null) {
+            zip.close();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Log-linear histogram in the style of HdrHistogram: every power of two is
+// split into 32 linear sub-buckets, which keeps the error under about 3% from
+// nanoseconds up to hours in a fixed 1920 counters. record() is lock-free and
+// does not allocate, so it can sit on hot paths and be shared between threads.
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(bucketOf(value));
+        total.incrementAndGet();
+        sum.addAndGet(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // Retry until we store the larger value or someone beats us to it
+        }
+    }
+
+    long getCount() { return total.get(); }
+    long getMax() { return max.get(); }
+
+    double getMean() {
+        long count = total.get();
+        return count == 0 ? 0 : (double) sum.get() / count;
+    }
+
+    // Upper bound of the bucket holding the given percentile (0-100)
+    long getPercentile(double percentile) {
+        long count = total.get();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    // Add another histogram's counts into this one
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = other.counts.get(i);
+            if (c != 0) {
+                counts.addAndGet(i, c);
+            }
+        }
+        total.addAndGet(other.total.get());
+        sum.addAndGet(other.sum.get());
+        long otherMax = other.max.get();
+        long current;
+        while (otherMax > (current = max.get()) && !max.compareAndSet(current, otherMax)) {
+            // Retry
+        }
+    }
+
+    // The non-empty buckets and totals, for keeping a histogram between runs
+    void writeTo(DataOutput out) throws IOException {
+        int used = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts.get(i) != 0) {
+                used++;
+            }
+        }
+        out.writeShort(used);
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = counts.get(i);
+            if (c != 0) {
+                out.writeShort(i);
+                out.writeLong(c);
+            }
+        }
+        out.writeLong(total.get());
+        out.writeLong(sum.get());
+        out.writeLong(max.get());
+    }
+
+    // Add counts saved by writeTo into this histogram
+    void readFrom(DataInput in) throws IOException {
+        LatencyHistogram saved = new LatencyHistogram();
+        int used = in.readUnsignedShort();
+        for (int n = 0; n < used; n++) {
+            int bucket = in.readUnsignedShort();
+            if (bucket >= BUCKETS) {
+                throw new IOException("Bad histogram bucket " + bucket);
+            }
+            saved.counts.set(bucket, in.readLong());
+        }
+        saved.total.set(in.readLong());
+        saved.sum.set(in.readLong());
+        saved.max.set(in.readLong());
+        add(saved);
+    }
+
+    // One-line summary, with values divided by unitScale (e.g. 1000 for micros)
+    String summary(String unit, double unitScale) {
+        return String.format("count=%d mean=%.1f%s p50=%.1f%s p90=%.1f%s p99=%.1f%s p99.9=%.1f%s max=%.1f%s",
+            getCount(), getMean() / unitScale, unit, getPercentile(50) / unitScale, unit,
+            getPercentile(90) / unitScale, unit, getPercentile(99) / unitScale, unit,
+            getPercentile(99.9) / unitScale, unit, getMax() / unitScale, unit);
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value); // >= SUB_BUCKET_BITS
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+}
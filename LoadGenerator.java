@@ -0,0 +1,274 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Load test client for GameServer. Opens the given number of sessions at
+// once, each on its own (virtual, where available) thread, and has every one
+// play games back to back for the test duration with a perfect-memory bot:
+// it remembers every candy it has seen, takes a known pair when it has one,
+// pauses for the flip-back after a mismatch, and thinks for a random
+// interval between clicks. Every request's round trip goes into one shared
+// histogram, so the report shows throughput and tail latency across all
+// simultaneous games.
+//
+// Usage: --loadgen [sessions] [seconds] [rows cols] [port]
+// With no server on the port an in-process one is started.
+final class LoadGenerator {
+    private static final int GAME_SECONDS = 40;
+    private static final long FLIP_BACK_MILLIS = 1000;
+    private static final int THINK_MILLIS_MIN = 50;
+    private static final int THINK_MILLIS_MAX = 250;
+    private static final int RAMP_SECONDS = 60;
+
+    private final int port;
+    private final int rows;
+    private final int cols;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder gamesWon = new LongAdder();
+    private final LongAdder gamesLost = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicInteger connected = new AtomicInteger();
+    private volatile boolean running = true;
+
+    LoadGenerator(int port, int rows, int cols) {
+        this.port = port;
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    void run(int sessions, int seconds) throws InterruptedException {
+        ExecutorService clients = VirtualThreads.newPerTaskExecutor("candy-loadgen");
+        CountDownLatch done = new CountDownLatch(sessions);
+        long rampStart = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            clients.execute(() -> {
+                try {
+                    playSession();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        // Wait for every session to connect, then measure from a clean slate
+        long rampDeadline = rampStart + TimeUnit.SECONDS.toNanos(RAMP_SECONDS);
+        while (connected.get() < sessions && System.nanoTime() < rampDeadline && errors.sum() == 0) {
+            Thread.sleep(100);
+        }
+        System.out.println(String.format("%d of %d sessions connected in %.1f s", connected.get(), sessions,
+            (System.nanoTime() - rampStart) / 1e9));
+        latency.reset();
+        requests.reset();
+        gamesWon.reset();
+        gamesLost.reset();
+
+        // Report once a second while the games run
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long lastRequests = 0;
+        while (System.nanoTime() < end) {
+            Thread.sleep(1000);
+            long total = requests.sum();
+            System.out.println(String.format("  %3ds  sessions %5d  %7d req/s  p99 %.1f ms",
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start), connected.get(),
+                total - lastRequests, latency.getPercentile(99) / 1e6));
+            lastRequests = total;
+        }
+        running = false;
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        long total = requests.sum();
+        done.await(RAMP_SECONDS, TimeUnit.SECONDS);
+        clients.shutdownNow();
+
+        System.out.println(String.format("%d sessions on %s for %.1f s: %d requests (%.0f/s), %d won, %d lost, %d errors",
+            sessions, VirtualThreads.isAvailable() ? "virtual threads" : "platform threads", elapsed,
+            total, total / elapsed, gamesWon.sum(), gamesLost.sum(), errors.sum()));
+        System.out.println("Round trip: " + latency.summary("ms", 1e6));
+    }
+
+    private void playSession() {
+        boolean ready = false;
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII))) {
+            socket.setTcpNoDelay(true);
+            // A first round trip proves the server has a thread on this session
+            request(in, out, "STATE");
+            connected.incrementAndGet();
+            ready = true;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            // Spread the first requests out instead of all sessions firing at once
+            Thread.sleep(random.nextInt(THINK_MILLIS_MAX * 4));
+            while (running) {
+                playGame(in, out, random);
+            }
+            out.write("QUIT\n");
+            out.flush();
+        } catch (IOException e) {
+            errors.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (ready) {
+                connected.decrementAndGet();
+            }
+        }
+    }
+
+    private void playGame(BufferedReader in, Writer out, ThreadLocalRandom random)
+            throws IOException, InterruptedException {
+        String[] reply = request(in, out, "NEW " + rows + " " + cols + " " + GAME_SECONDS);
+        if (!reply[0].equals("OK")) {
+            errors.increment();
+            running = false;
+            return;
+        }
+        int cards = Integer.parseInt(reply[2]);
+
+        // What the bot has seen: candy per cell, -1 while unknown
+        int[] seen = new int[cards];
+        Arrays.fill(seen, -1);
+        boolean[] matched = new boolean[cards];
+        int nextUnknown = 0;
+
+        while (running) {
+            // Prefer a remembered pair, otherwise turn over the next unknown card
+            int first = -1;
+            int second = -1;
+            for (int a = 0; a < cards && first < 0; a++) {
+                if (matched[a] || seen[a] < 0) {
+                    continue;
+                }
+                for (int b = a + 1; b < cards; b++) {
+                    if (!matched[b] && seen[b] == seen[a]) {
+                        first = a;
+                        second = b;
+                        break;
+                    }
+                }
+            }
+            if (first < 0) {
+                while (nextUnknown < cards && seen[nextUnknown] >= 0) {
+                    nextUnknown++;
+                }
+                if (nextUnknown == cards) {
+                    return;
+                }
+                first = nextUnknown;
+            }
+
+            Thread.sleep(random.nextInt(THINK_MILLIS_MIN, THINK_MILLIS_MAX));
+            reply = request(in, out, "CLICK " + first);
+            if (isOver(reply)) {
+                return;
+            }
+            seen[first] = Integer.parseInt(reply[1]);
+
+            if (second < 0) {
+                // Now pick a match for what just turned up, or another unknown card
+                for (int b = 0; b < cards; b++) {
+                    if (b != first && !matched[b] && seen[b] == seen[first]) {
+                        second = b;
+                        break;
+                    }
+                }
+                if (second < 0) {
+                    second = first + 1;
+                    while (second < cards && seen[second] >= 0) {
+                        second++;
+                    }
+                    if (second == cards) {
+                        return;
+                    }
+                }
+            }
+
+            Thread.sleep(random.nextInt(THINK_MILLIS_MIN, THINK_MILLIS_MAX));
+            reply = request(in, out, "CLICK " + second);
+            if (isOver(reply)) {
+                return;
+            }
+            seen[second] = Integer.parseInt(reply[1]);
+            if (reply[0].equals("WIN")) {
+                gamesWon.increment();
+                return;
+            } else if (reply[0].equals("MATCH")) {
+                matched[first] = true;
+                matched[second] = true;
+            } else {
+                // Wait out the flip-back, as a player would
+                Thread.sleep(FLIP_BACK_MILLIS);
+            }
+        }
+    }
+
+    // A click the server ignored means the clock ran out (or the reply was bad)
+    private boolean isOver(String[] reply) {
+        if (reply[0].equals("IGNORED")) {
+            gamesLost.increment();
+            return true;
+        }
+        if (reply[0].equals("ERR")) {
+            errors.increment();
+            return true;
+        }
+        return false;
+    }
+
+    private String[] request(BufferedReader in, Writer out, String line) throws IOException {
+        long start = System.nanoTime();
+        out.write(line);
+        out.write('\n');
+        out.flush();
+        String reply = in.readLine();
+        latency.record(System.nanoTime() - start);
+        requests.increment();
+        if (reply == null) {
+            throw new IOException("server closed the session");
+        }
+        return reply.split(" ");
+    }
+
+    static void main(String[] args) throws IOException, InterruptedException {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int rows = args.length > 3 ? Integer.parseInt(args[2]) : 4;
+        int cols = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        int port = args.length > 4 ? Integer.parseInt(args[4]) : GameServer.DEFAULT_PORT;
+
+        GameServer server = null;
+        try (Socket probe = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            System.out.println("Using the game server on port " + probe.getPort());
+        } catch (IOException e) {
+            server = new GameServer(0);
+            port = server.getPort();
+            System.out.println("Started an in-process game server on port " + port);
+        }
+
+        try {
+            new LoadGenerator(port, rows, cols).run(sessions, seconds);
+            if (server != null) {
+                System.out.println(String.format("Server: peak %d sessions, %d games, %d requests",
+                    server.getPeakSessions(), server.getGamesStarted(), server.getRequests()));
+            }
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+}
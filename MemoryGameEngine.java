@@ -0,0 +1,286 @@
+import java.util.Arrays;
+import java.util.Random;
+
+// Headless rules for the memory match game. The board is kept as primitive
+// arrays plus bitsets for revealed and matched cards, so a click never
+// allocates and the same rules can run in the Swing view, a server or a bot.
+// A board is fully determined by its seed, so seed plus the accepted clicks,
+// flip-backs and ticks reproduce a game exactly.
+final class MemoryGameEngine {
+    // Results of click()
+    static final int CLICK_IGNORED = 0;
+    static final int CLICK_FIRST = 1;
+    static final int CLICK_MATCH = 2;
+    static final int CLICK_MISMATCH = 3;
+    static final int CLICK_WIN = 4;
+
+    private final int rows;
+    private final int cols;
+    private final int cardCount;
+    private final int pairCount;
+    private final int candyCount;
+    private final int duration;
+
+    // Board layout: candy index and back number for every cell
+    private final int[] candies;
+    private final int[] numbers;
+
+    // One bit per cell
+    private final long[] revealed;
+    private final long[] matched;
+
+    private int firstSelected;
+    private int secondSelected;
+    private int lastFirstCell;
+    private int lastSecondCell;
+    private int pairsFound;
+    private int misses;
+    private int timeRemaining;
+    private long seed;
+
+    private final Random random = new Random();
+    private GameEventListener[] listeners = new GameEventListener[0];
+
+    MemoryGameEngine(int rows, int cols, int candyCount, int duration) {
+        if (rows <= 0 || cols <= 0 || (rows * cols) % 2 != 0) {
+            throw new IllegalArgumentException("Board must have an even number of cards: " + rows + "x" + cols);
+        }
+        if (candyCount <= 0) {
+            throw new IllegalArgumentException("candyCount must be positive: " + candyCount);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.cardCount = rows * cols;
+        this.pairCount = cardCount / 2;
+        this.candyCount = candyCount;
+        this.duration = duration;
+        this.candies = new int[cardCount];
+        this.numbers = new int[cardCount];
+        this.revealed = new long[(cardCount + 63) >>> 6];
+        this.matched = new long[(cardCount + 63) >>> 6];
+        newGame(random.nextLong());
+    }
+
+    // Distinct candies for a board: every pair gets its own candy, and small
+    // boards still draw from at least minimum of them
+    static int candyCountFor(int rows, int cols, int minimum) {
+        return Math.max(minimum, rows * cols / 2);
+    }
+
+    void addListener(GameEventListener listener) {
+        listeners = Arrays.copyOf(listeners, listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+    }
+
+    void removeListener(GameEventListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                GameEventListener[] remaining = new GameEventListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, remaining, 0, i);
+                System.arraycopy(listeners, i + 1, remaining, i, remaining.length - i);
+                listeners = remaining;
+                return;
+            }
+        }
+    }
+
+    private void fire(int type, int cell) {
+        for (GameEventListener listener : listeners) {
+            listener.onGameEvent(this, type, cell);
+        }
+    }
+
+    // Deal the board for a seed. Reuses all arrays, so this does not allocate either.
+    void newGame(long seed) {
+        deal(seed);
+        fire(GameEventListener.NEW_GAME, -1);
+    }
+
+    // Put a saved game back: the deal for seed, the matched cells (one bit
+    // per cell, in complete pairs) and at most one face-up unmatched card.
+    // Listeners get RESTORE rather than NEW_GAME, since the board is not fresh.
+    void restore(long seed, long[] matchedCells, int firstSelected, int misses, int timeRemaining) {
+        if (matchedCells.length != matched.length) {
+            throw new IllegalArgumentException("Matched cells are for a different board size");
+        }
+        if (timeRemaining < 0 || timeRemaining > duration || misses < 0) {
+            throw new IllegalArgumentException("Bad counters: " + timeRemaining + "s left, " + misses + " misses");
+        }
+        deal(seed);
+        int[] perCandy = new int[candyCount];
+        int matchedCount = 0;
+        for (int cell = 0; cell < cardCount; cell++) {
+            if (getBit(matchedCells, cell)) {
+                perCandy[candies[cell]]++;
+                matchedCount++;
+            }
+        }
+        for (int count : perCandy) {
+            if (count % 2 != 0) {
+                throw new IllegalArgumentException("Matched cells do not form pairs for this seed");
+            }
+        }
+        int tail = cardCount & 63;
+        if (tail != 0 && (matchedCells[matchedCells.length - 1] >>> tail) != 0) {
+            throw new IllegalArgumentException("Matched cells past the end of the board");
+        }
+        if (firstSelected < -1 || firstSelected >= cardCount || (firstSelected >= 0 && getBit(matchedCells, firstSelected))) {
+            throw new IllegalArgumentException("Bad selected card: " + firstSelected);
+        }
+
+        System.arraycopy(matchedCells, 0, matched, 0, matched.length);
+        System.arraycopy(matchedCells, 0, revealed, 0, revealed.length);
+        if (firstSelected >= 0) {
+            setBit(revealed, firstSelected);
+        }
+        this.firstSelected = firstSelected;
+        this.pairsFound = matchedCount / 2;
+        this.misses = misses;
+        this.timeRemaining = timeRemaining;
+        fire(GameEventListener.RESTORE, -1);
+    }
+
+    private void deal(long seed) {
+        this.seed = seed;
+        random.setSeed(seed);
+        // Lay out the pairs, then shuffle the cards and their back numbers
+        // independently, like the original two Collections.shuffle calls
+        for (int pair = 0; pair < pairCount; pair++) {
+            int candy = pair % candyCount;
+            candies[2 * pair] = candy;
+            candies[2 * pair + 1] = candy;
+        }
+        for (int i = 0; i < cardCount; i++) {
+            numbers[i] = i + 1;
+        }
+        shuffle(candies, random);
+        shuffle(numbers, random);
+
+        Arrays.fill(revealed, 0L);
+        Arrays.fill(matched, 0L);
+        firstSelected = -1;
+        secondSelected = -1;
+        lastFirstCell = -1;
+        lastSecondCell = -1;
+        pairsFound = 0;
+        misses = 0;
+        timeRemaining = duration;
+    }
+
+    private static void shuffle(int[] values, Random random) {
+        for (int i = values.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+    }
+
+    // Reveal a card. While a mismatched pair is still showing every click is
+    // ignored until flipBack() is called.
+    int click(int cell) {
+        if (isMatched(cell) || isRevealed(cell) || secondSelected != -1 || timeRemaining <= 0) {
+            return CLICK_IGNORED;
+        }
+
+        setBit(revealed, cell);
+        fire(GameEventListener.CLICK, cell);
+
+        if (firstSelected == -1) {
+            firstSelected = cell;
+            return CLICK_FIRST;
+        }
+
+        secondSelected = cell;
+        lastFirstCell = firstSelected;
+        lastSecondCell = secondSelected;
+
+        if (candies[firstSelected] == candies[secondSelected]) {
+            setBit(matched, firstSelected);
+            setBit(matched, secondSelected);
+            pairsFound++;
+            firstSelected = -1;
+            secondSelected = -1;
+            if (pairsFound >= pairCount) {
+                fire(GameEventListener.WIN, cell);
+                return CLICK_WIN;
+            }
+            fire(GameEventListener.MATCH, cell);
+            return CLICK_MATCH;
+        }
+        misses++;
+        fire(GameEventListener.MISMATCH, cell);
+        return CLICK_MISMATCH;
+    }
+
+    // Hide a mismatched pair again. Returns false if there was nothing to flip.
+    boolean flipBack() {
+        if (secondSelected == -1) {
+            return false;
+        }
+        int cell = secondSelected;
+        clearBit(revealed, firstSelected);
+        clearBit(revealed, secondSelected);
+        firstSelected = -1;
+        secondSelected = -1;
+        fire(GameEventListener.FLIP_BACK, cell);
+        return true;
+    }
+
+    // Advance the countdown by one second. Returns true when this tick ran the
+    // clock out.
+    boolean tick() {
+        if (timeRemaining <= 0 || isWon()) {
+            return false;
+        }
+        timeRemaining--;
+        fire(GameEventListener.TICK, -1);
+        if (timeRemaining <= 0) {
+            fire(GameEventListener.TIME_UP, -1);
+            return true;
+        }
+        return false;
+    }
+
+    boolean isWon() { return pairsFound >= pairCount; }
+    boolean isOver() { return isWon() || timeRemaining <= 0; }
+    boolean isAwaitingFlipBack() { return secondSelected != -1; }
+
+    boolean isRevealed(int cell) { return getBit(revealed, cell); }
+    boolean isMatched(int cell) { return getBit(matched, cell); }
+    int getCandy(int cell) { return candies[cell]; }
+    int getNumber(int cell) { return numbers[cell]; }
+
+    int getRows() { return rows; }
+    int getCols() { return cols; }
+    int getCardCount() { return cardCount; }
+    int getPairCount() { return pairCount; }
+    int getCandyCount() { return candyCount; }
+    int getDuration() { return duration; }
+    long getSeed() { return seed; }
+    int getPairsFound() { return pairsFound; }
+    int getMisses() { return misses; }
+    int getTimeRemaining() { return timeRemaining; }
+    int getFirstSelected() { return firstSelected; }
+    int getSecondSelected() { return secondSelected; }
+
+    // Copies of the bitsets, one bit per cell
+    long[] copyRevealed() { return revealed.clone(); }
+    long[] copyMatched() { return matched.clone(); }
+
+    // The two cells compared by the most recent second click
+    int getLastFirstCell() { return lastFirstCell; }
+    int getLastSecondCell() { return lastSecondCell; }
+
+    private static boolean getBit(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void setBit(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private static void clearBit(long[] bits, int index) {
+        bits[index >>> 6] &= ~(1L << index);
+    }
+}
@@ -0,0 +1,141 @@
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// In-process metrics: named counters, gauges and latency histograms. Callers look a
+// metric up once, keep it in a static field, and then recording is a
+// lock-free add with no allocation. The whole registry can be exported as
+// text in the Prometheus exposition format:
+//   -Dcandy.metricsFile=<path>  rewrites the file every 10 seconds and on exit
+//   -Dcandy.metricsPort=<port>  serves it at http://127.0.0.1:<port>/metrics
+final class Metrics {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final long EXPORT_SECONDS = 10;
+
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, AtomicLong> GAUGES = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static boolean exportersStarted;
+
+    private Metrics() {
+    }
+
+    static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    // A current value, such as a level or a size, that can go down as well as up
+    static AtomicLong gauge(String name) {
+        return GAUGES.computeIfAbsent(name, n -> new AtomicLong());
+    }
+
+    // Histogram of durations in nanoseconds
+    static LatencyHistogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    // Every metric, sorted by name
+    static String export() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(COUNTERS).entrySet()) {
+            String name = metricName(entry.getKey());
+            out.append("# TYPE ").append(name).append(" counter\n");
+            out.append(name).append(' ').append(entry.getValue().sum()).append('\n');
+        }
+        for (Map.Entry<String, AtomicLong> entry : new TreeMap<>(GAUGES).entrySet()) {
+            String name = metricName(entry.getKey());
+            out.append("# TYPE ").append(name).append(" gauge\n");
+            out.append(name).append(' ').append(entry.getValue().get()).append('\n');
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(HISTOGRAMS).entrySet()) {
+            String name = metricName(entry.getKey()) + "_seconds";
+            LatencyHistogram histogram = entry.getValue();
+            out.append("# TYPE ").append(name).append(" summary\n");
+            for (double quantile : QUANTILES) {
+                out.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                    .append(seconds(histogram.getPercentile(quantile * 100))).append('\n');
+            }
+            out.append(name).append("_max ").append(seconds(histogram.getMax())).append('\n');
+            out.append(name).append("_count ").append(histogram.getCount()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static String metricName(String name) {
+        return "candy_" + name.replace('.', '_');
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    // Start whichever exporters the system properties ask for
+    static synchronized void startExporters() {
+        if (exportersStarted) {
+            return;
+        }
+        exportersStarted = true;
+
+        String file = System.getProperty("candy.metricsFile");
+        if (file != null) {
+            Path path = Paths.get(file);
+            ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "candy-metrics-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            writer.scheduleWithFixedDelay(() -> writeFile(path), EXPORT_SECONDS, EXPORT_SECONDS, TimeUnit.SECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> writeFile(path)));
+        }
+
+        Integer port = Integer.getInteger("candy.metricsPort");
+        if (port != null) {
+            try {
+                HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+                server.createContext("/metrics", exchange -> {
+                    byte[] body = export().getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body);
+                    }
+                });
+                server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "candy-metrics-http");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+                server.start();
+            } catch (IOException e) {
+                System.out.println("Error starting metrics endpoint: " + e.getMessage());
+            }
+        }
+    }
+
+    // Write to a temporary file and move it over, so readers never see half a snapshot
+    private static void writeFile(Path path) {
+        try {
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.write(temp, export().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Error writing metrics: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,144 @@
+import java.awt.*;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Trades looks for speed on machines that cannot paint a frame in time.
+// Components report each paint; an animation frame is reported as a whole,
+// including the paints of the components under it, which are not counted
+// again on their own. Every WINDOW paints the governor looks at the
+// 75th percentile, and if it is over the budget (half a frame, leaving the
+// rest of the frame to the EDT's other work) it drops one level:
+//   HIGH    antialiasing, smooth image scaling, background decorations
+//   MEDIUM  antialiasing, nearest-neighbour scaling, no decorations
+//   LOW     as MEDIUM without antialiasing, and cards turn without animating
+// It goes back up one level after several windows in a row whose slowest
+// paint used under a third of the budget. A level that has to be dropped
+// again right after being raised doubles the number of windows needed next
+// time, so a machine on the edge does not flicker between levels. The window
+// after a change is ignored, since it pays for re-rendering sprites.
+//
+// -Dcandy.quality=high|medium|low pins a level and turns the governor off.
+// The level is exported as the render.quality_level gauge, each change counts
+// towards render.quality_lowered.slow_paint or render.quality_raised.headroom,
+// and a flight event records the window's paint time. Confined to the EDT.
+final class RenderQualityGovernor {
+    static final int LOW = 0;
+    static final int MEDIUM = 1;
+    static final int HIGH = 2;
+    private static final String[] LEVEL_NAMES = {"low", "medium", "high"};
+
+    private static final int WINDOW = 32;
+    private static final int MIN_HEADROOM_WINDOWS = 4;
+    private static final int MAX_HEADROOM_WINDOWS = 64;
+    private static final String FIXED_LEVEL = System.getProperty("candy.quality", "auto");
+
+    private static final AtomicLong LEVEL = Metrics.gauge("render.quality_level");
+    private static final LongAdder LOWERED = Metrics.counter("render.quality_lowered.slow_paint");
+    private static final LongAdder RAISED = Metrics.counter("render.quality_raised.headroom");
+
+    private final long budgetNanos;
+    private final boolean adaptive;
+    private int level = HIGH;
+    private Runnable changeListener = () -> { };
+
+    private final long[] window = new long[WINDOW];
+    private int samples;
+    private boolean settling;
+    private int headroomWindows;
+    private int requiredHeadroom = MIN_HEADROOM_WINDOWS;
+    private int windowsSinceRaise = Integer.MAX_VALUE;
+    private boolean inFrame;
+
+    RenderQualityGovernor(long frameNanos) {
+        this.budgetNanos = frameNanos / 2;
+        int fixed = Arrays.asList(LEVEL_NAMES).indexOf(FIXED_LEVEL);
+        this.adaptive = fixed == -1;
+        if (!adaptive) {
+            level = fixed;
+        }
+        LEVEL.set(level);
+    }
+
+    int getLevel() { return level; }
+    boolean isDecorated() { return level == HIGH; }
+
+    // Called on the EDT after the level changes, to re-render and repaint
+    void setChangeListener(Runnable listener) {
+        this.changeListener = listener;
+    }
+
+    // Set the antialiasing and image scaling hints for the current level
+    void applyHints(Graphics2D g2d) {
+        applyHints(g2d, level);
+    }
+
+    static void applyHints(Graphics2D g2d, int level) {
+        boolean antialias = level >= MEDIUM;
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+            antialias ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+            antialias ? RenderingHints.VALUE_TEXT_ANTIALIAS_ON : RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, level == HIGH
+            ? RenderingHints.VALUE_INTERPOLATION_BILINEAR : RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+    }
+
+    // Paints reported until endFrame are part of the frame
+    void beginFrame() {
+        inFrame = true;
+    }
+
+    void endFrame(long frameNanos) {
+        inFrame = false;
+        record(frameNanos);
+    }
+
+    // One paint of a governed component, in nanoseconds
+    void record(long paintNanos) {
+        if (!adaptive || inFrame) {
+            return;
+        }
+        window[samples++] = paintNanos;
+        if (samples < WINDOW) {
+            return;
+        }
+        samples = 0;
+        if (settling) {
+            settling = false;
+            return;
+        }
+        Arrays.sort(window);
+        long p75 = window[WINDOW * 3 / 4];
+        long slowest = window[WINDOW - 1];
+        if (windowsSinceRaise != Integer.MAX_VALUE) {
+            windowsSinceRaise++;
+        }
+
+        if (p75 > budgetNanos && level > LOW) {
+            if (windowsSinceRaise <= 2) {
+                // The level just raised was too much after all
+                requiredHeadroom = Math.min(MAX_HEADROOM_WINDOWS, requiredHeadroom * 2);
+            }
+            windowsSinceRaise = Integer.MAX_VALUE;
+            LOWERED.increment();
+            change(level - 1, "slow_paint", p75);
+        } else if (slowest < budgetNanos / 3 && level < HIGH) {
+            if (++headroomWindows >= requiredHeadroom) {
+                windowsSinceRaise = 0;
+                RAISED.increment();
+                change(level + 1, "headroom", p75);
+            }
+        } else {
+            headroomWindows = 0;
+        }
+    }
+
+    private void change(int next, String reason, long p75) {
+        FlightEvents.qualityChange(LEVEL_NAMES[level], LEVEL_NAMES[next], reason, p75);
+        level = next;
+        LEVEL.set(next);
+        headroomWindows = 0;
+        settling = true;
+        changeListener.run();
+    }
+}
@@ -0,0 +1,203 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Appends every game event to a compact binary log. Events are encoded into
+// an in-memory buffer under a short lock, and a background thread swaps the
+// buffers and writes the full one to a FileChannel, so the EDT never waits on
+// disk. If the writer ever falls a whole buffer behind, events are counted as
+// dropped rather than blocking the game.
+//
+// File layout: "CMRL", a version byte, then one record per event. Each record
+// is a type byte followed by
+//   NEW_GAME: seed (8 bytes), rows, cols, candy count, duration (varints),
+//             wall clock millis (8 bytes)
+//   RESTORE:  the NEW_GAME fields, then the GameSnapshot that was resumed:
+//             its length (varint) and bytes
+//   others:   cell + 1 (varint), microseconds since the previous record (varint)
+// Version 2 added RESTORE. A version 1 log is also a valid version 2 log, so
+// opening one just updates its version byte.
+final class ReplayLog implements GameEventListener, Closeable {
+    static final int MAGIC = 0x434D524C; // "CMRL"
+    static final int VERSION = 2;
+
+    private static final int BUFFER_BYTES = 256 * 1024;
+    private static final int MAX_RECORD_BYTES = 64;
+    private static final long FLUSH_MILLIS = 250;
+
+    private final FileChannel channel;
+    private final Object lock = new Object();
+    private final GameSnapshot snapshot = new GameSnapshot();
+    private ByteBuffer snapshotBytes = ByteBuffer.allocate(0);
+    private ByteBuffer active = ByteBuffer.allocate(BUFFER_BYTES);
+    private ByteBuffer writing = ByteBuffer.allocate(BUFFER_BYTES);
+    private final Thread writer;
+    private volatile boolean closed;
+
+    private long lastNanos;
+    private long recordedEvents;
+    private long droppedEvents;
+    private IOException writeError;
+
+    private ReplayLog(FileChannel channel) {
+        this.channel = channel;
+        this.lastNanos = System.nanoTime();
+        this.writer = new Thread(this::writeLoop, "candy-replay-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Open a log for appending; a new file gets the header first
+    static ReplayLog open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(ReplayReader.HEADER_BYTES);
+            if (channel.size() == 0) {
+                header.putInt(MAGIC).put((byte) VERSION).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+            } else {
+                while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                    // Read until the header is complete or the file ends
+                }
+                if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+                    throw new IOException("Not a replay log: " + path);
+                }
+                int version = header.get(4);
+                if (version > VERSION) {
+                    throw new IOException("Unsupported replay log version " + version + ": " + path);
+                }
+                if (version < VERSION) {
+                    channel.write(ByteBuffer.wrap(new byte[] {(byte) VERSION}), 4);
+                }
+            }
+            channel.position(channel.size());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new ReplayLog(channel);
+    }
+
+    @Override
+    public void onGameEvent(MemoryGameEngine engine, int type, int cell) {
+        long now = System.nanoTime();
+        synchronized (lock) {
+            int snapshotLength = 0;
+            if (type == RESTORE) {
+                int maxBytes = GameSnapshot.maxBytes(engine);
+                if (snapshotBytes.capacity() < maxBytes) {
+                    snapshotBytes = ByteBuffer.allocate(maxBytes);
+                }
+                snapshotBytes.clear();
+                snapshot.write(engine, snapshotBytes);
+                snapshotLength = snapshotBytes.position();
+            }
+            if (closed || active.remaining() < MAX_RECORD_BYTES + snapshotLength) {
+                droppedEvents++;
+                return;
+            }
+            ByteBuffer out = active;
+            out.put((byte) type);
+            if (type == NEW_GAME || type == RESTORE) {
+                out.putLong(engine.getSeed());
+                putVarint(out, engine.getRows());
+                putVarint(out, engine.getCols());
+                putVarint(out, engine.getCandyCount());
+                putVarint(out, engine.getDuration());
+                out.putLong(System.currentTimeMillis());
+                if (type == RESTORE) {
+                    putVarint(out, snapshotLength);
+                    out.put(snapshotBytes.array(), 0, snapshotLength);
+                }
+            } else {
+                putVarint(out, cell + 1);
+                putVarint(out, (now - lastNanos) / 1000);
+            }
+            lastNanos = now;
+            recordedEvents++;
+            if (out.position() > BUFFER_BYTES / 2) {
+                lock.notify();
+            }
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            synchronized (lock) {
+                while (active.position() == 0 && !closed) {
+                    try {
+                        lock.wait(FLUSH_MILLIS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (active.position() == 0 && closed) {
+                    return;
+                }
+                ByteBuffer full = active;
+                active = writing;
+                writing = full;
+            }
+
+            writing.flip();
+            try {
+                while (writing.hasRemaining()) {
+                    channel.write(writing);
+                }
+            } catch (IOException e) {
+                synchronized (lock) {
+                    writeError = e;
+                    closed = true;
+                }
+                System.out.println("Error writing replay log: " + e.getMessage());
+                return;
+            }
+            writing.clear();
+        }
+    }
+
+    // Flush whatever is buffered and close the file
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            closed = true;
+            lock.notify();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.force(false);
+        channel.close();
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+
+    long getRecordedEvents() {
+        synchronized (lock) {
+            return recordedEvents;
+        }
+    }
+
+    long getDroppedEvents() {
+        synchronized (lock) {
+            return droppedEvents;
+        }
+    }
+
+    static void putVarint(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+}
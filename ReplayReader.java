@@ -0,0 +1,121 @@
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Streams the records of a ReplayLog file one at a time. The fields of the
+// current record are exposed directly, so reading a log does not allocate
+// per record. A record cut short at the end of the file (the game was still
+// running when the file was copied) ends the stream quietly. getPosition()
+// is the file offset of the next record, so a reader can stop at a record
+// boundary and a later one can pick up from there.
+final class ReplayReader implements Closeable {
+    static final int HEADER_BYTES = 5;
+
+    private final DataInputStream in;
+
+    // Current record
+    int type;
+    int cell;
+    long deltaMicros;
+    // NEW_GAME and RESTORE fields
+    long seed;
+    int rows;
+    int cols;
+    int candyCount;
+    int duration;
+    long wallClockMillis;
+    // RESTORE: the GameSnapshot resumed, in the first snapshotLength bytes
+    byte[] snapshot = new byte[0];
+    int snapshotLength;
+
+    private boolean truncated;
+    private long position;
+    private int varintBytes;
+
+    ReplayReader(Path path) throws IOException {
+        this(path, HEADER_BYTES);
+    }
+
+    // Start reading at offset, which must be a record boundary from getPosition()
+    ReplayReader(Path path, long offset) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+        try {
+            if (in.readInt() != ReplayLog.MAGIC) {
+                throw new IOException("Not a replay log: " + path);
+            }
+            int version = in.readUnsignedByte();
+            if (version < 1 || version > ReplayLog.VERSION) {
+                throw new IOException("Unsupported replay log version " + version + ": " + path);
+            }
+            in.skipNBytes(Math.max(0, offset - HEADER_BYTES));
+            position = Math.max(offset, HEADER_BYTES);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    // Advance to the next record; false at the end of the log
+    boolean next() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            return false;
+        }
+        varintBytes = 0;
+        try {
+            type = b;
+            long recordBytes = 1;
+            if (type == GameEventListener.NEW_GAME || type == GameEventListener.RESTORE) {
+                seed = in.readLong();
+                rows = (int) readVarint();
+                cols = (int) readVarint();
+                candyCount = (int) readVarint();
+                duration = (int) readVarint();
+                wallClockMillis = in.readLong();
+                cell = -1;
+                deltaMicros = 0;
+                recordBytes += 16;
+                if (type == GameEventListener.RESTORE) {
+                    snapshotLength = (int) readVarint();
+                    if (snapshot.length < snapshotLength) {
+                        snapshot = new byte[snapshotLength];
+                    }
+                    in.readFully(snapshot, 0, snapshotLength);
+                    recordBytes += snapshotLength;
+                }
+            } else {
+                cell = (int) readVarint() - 1;
+                deltaMicros = readVarint();
+            }
+            position += recordBytes + varintBytes;
+            return true;
+        } catch (EOFException e) {
+            truncated = true;
+            return false;
+        }
+    }
+
+    boolean isTruncated() { return truncated; }
+    long getPosition() { return position; }
+
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            varintBytes++;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
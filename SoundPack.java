@@ -0,0 +1,82 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+// A themed set of the four game sounds. Every sound in a pack, and every
+// pack when several are requested, is synthesized as its own fork/join task
+// so startup pays for the slowest sound rather than the sum of them.
+final class SoundPack {
+    static final int FLIP = 0;
+    static final int MATCH = 1;
+    static final int WIN = 2;
+    static final int LOSE = 3;
+    private static final int SOUND_COUNT = 4;
+
+    enum Theme {
+        // The original beeps: sine tones at the same pitches and lengths
+        CANDY(ToneSynth.WAVE_SINE, 0.8f,
+            new int[][] {{300}, {600}, {600, 800, 1000}, {400, 300, 200}},
+            new int[][] {{50}, {150}, {150, 150, 300}, {150, 150, 300}}),
+        ARCADE(ToneSynth.WAVE_SOFT_SQUARE, 0.5f,
+            new int[][] {{520}, {880, 1320}, {660, 880, 1100, 1320}, {440, 370, 311, 262}},
+            new int[][] {{40}, {60, 90}, {100, 100, 100, 300}, {120, 120, 120, 300}}),
+        CHIME(ToneSynth.WAVE_TRIANGLE, 0.7f,
+            new int[][] {{1046}, {1318, 1568}, {1046, 1318, 1568, 2093}, {784, 659, 523}},
+            new int[][] {{60}, {90, 180}, {120, 120, 120, 360}, {180, 180, 400}});
+
+        final int wave;
+        final float volume;
+        final int[][] frequencies;
+        final int[][] durations;
+
+        Theme(int wave, float volume, int[][] frequencies, int[][] durations) {
+            this.wave = wave;
+            this.volume = volume;
+            this.frequencies = frequencies;
+            this.durations = durations;
+        }
+    }
+
+    private final Theme theme;
+    private final short[][] sounds = new short[SOUND_COUNT][];
+
+    private SoundPack(Theme theme) {
+        this.theme = theme;
+    }
+
+    Theme getTheme() { return theme; }
+
+    // PCM for FLIP, MATCH, WIN or LOSE, in the synth's channel layout
+    short[] get(int sound) { return sounds[sound]; }
+
+    static SoundPack synthesize(Theme theme, ToneSynth synth) {
+        return synthesizeAll(new Theme[] {theme}, synth)[0];
+    }
+
+    static SoundPack[] synthesizeAll(Theme[] themes, ToneSynth synth) {
+        SoundPack[] packs = new SoundPack[themes.length];
+        RecursiveAction[] tasks = new RecursiveAction[themes.length * SOUND_COUNT];
+        for (int p = 0; p < themes.length; p++) {
+            SoundPack pack = new SoundPack(themes[p]);
+            packs[p] = pack;
+            for (int s = 0; s < SOUND_COUNT; s++) {
+                int sound = s;
+                tasks[p * SOUND_COUNT + s] = new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        Theme theme = pack.theme;
+                        pack.sounds[sound] = synth.sequence(theme.wave, theme.frequencies[sound],
+                            theme.durations[sound], theme.volume);
+                    }
+                };
+            }
+        }
+        ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(tasks);
+            }
+        });
+        return packs;
+    }
+}
@@ -0,0 +1,165 @@
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Live game events for spectators: a lobby screen, overlays, a SpectatorRelay.
+// It is an engine listener, so the game's logic thread is its one producer,
+// and every event becomes a fixed-size record in a ring allocated up front.
+// Publishing never locks, allocates or waits for anyone.
+//
+// Any number of Cursors read the ring at their own pace. A cursor that falls
+// more than a ring behind skips ahead to the oldest record still there and
+// counts what it missed, so a slow spectator loses events instead of slowing
+// the game. Each record is checked after it is read, seqlock style, in case
+// the producer overwrote it meanwhile.
+//
+// Record (8 longs, one cache line): publish nanos, seed, type and cell,
+// candy and seconds left, pairs found and misses, rows and cols, duration.
+final class SpectatorBus implements GameEventListener {
+    static final int DEFAULT_CAPACITY = 1024;
+
+    private static final int RECORD_LONGS = 8;
+    private static final LongAdder PUBLISHED = Metrics.counter("spectator.events");
+    private static final LongAdder DROPPED = Metrics.counter("spectator.dropped");
+
+    private final long[] ring;
+    private final int mask;
+
+    // The last record completely written, and the last one the producer has
+    // started to write; a reader's record is intact while claimed is less
+    // than a ring past it
+    private volatile long published = -1;
+    private volatile long claimed = -1;
+
+    // One decoded record; read fields directly, like ReplayReader's
+    static final class Event {
+        long sequence;
+        long nanos;
+        long seed;
+        int type;
+        int cell;
+        int candy;
+        int timeRemaining;
+        int pairsFound;
+        int misses;
+        int rows;
+        int cols;
+        int duration;
+
+        int getPairCount() { return rows * cols / 2; }
+    }
+
+    // capacity is rounded up to a power of two
+    SpectatorBus(int capacity) {
+        int records = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new long[records * RECORD_LONGS];
+        this.mask = records - 1;
+    }
+
+    // On the logic thread
+    @Override
+    public void onGameEvent(MemoryGameEngine engine, int type, int cell) {
+        long sequence = published + 1;
+        claimed = sequence;
+        // The record must not be overwritten before readers can see the claim
+        VarHandle.storeStoreFence();
+        int base = (int) (sequence & mask) * RECORD_LONGS;
+        ring[base] = System.nanoTime();
+        ring[base + 1] = engine.getSeed();
+        ring[base + 2] = pack(type, cell);
+        ring[base + 3] = pack(cell >= 0 ? engine.getCandy(cell) : -1, engine.getTimeRemaining());
+        ring[base + 4] = pack(engine.getPairsFound(), engine.getMisses());
+        ring[base + 5] = pack(engine.getRows(), engine.getCols());
+        ring[base + 6] = engine.getDuration();
+        published = sequence;
+        PUBLISHED.increment();
+    }
+
+    private static long pack(int high, int low) {
+        return (long) high << 32 | (low & 0xFFFFFFFFL);
+    }
+
+    // A reader starting with the next event published
+    Cursor subscribe() {
+        return new Cursor(published + 1);
+    }
+
+    // One spectator's position in the ring. Confined to the spectator's thread.
+    final class Cursor {
+        private long next;
+        private long dropped;
+
+        private Cursor(long next) {
+            this.next = next;
+        }
+
+        // Copy the next event into event; false if there is none yet
+        boolean poll(Event event) {
+            while (true) {
+                long last = published;
+                if (next > last) {
+                    return false;
+                }
+                // Too far behind: the oldest records left are the only ones still whole
+                long oldest = last - mask;
+                if (next < oldest) {
+                    skipTo(oldest);
+                }
+                int base = (int) (next & mask) * RECORD_LONGS;
+                long nanos = ring[base];
+                long seed = ring[base + 1];
+                long typeCell = ring[base + 2];
+                long candyTime = ring[base + 3];
+                long pairsMisses = ring[base + 4];
+                long size = ring[base + 5];
+                long duration = ring[base + 6];
+                // Those reads must finish before checking they were not overwritten
+                VarHandle.acquireFence();
+                if (claimed - mask > next) {
+                    skipTo(claimed - mask);
+                    continue;
+                }
+                event.sequence = next++;
+                event.nanos = nanos;
+                event.seed = seed;
+                event.type = (int) (typeCell >>> 32);
+                event.cell = (int) typeCell;
+                event.candy = (int) (candyTime >> 32);
+                event.timeRemaining = (int) candyTime;
+                event.pairsFound = (int) (pairsMisses >>> 32);
+                event.misses = (int) pairsMisses;
+                event.rows = (int) (size >>> 32);
+                event.cols = (int) size;
+                event.duration = (int) duration;
+                return true;
+            }
+        }
+
+        private void skipTo(long sequence) {
+            dropped += sequence - next;
+            DROPPED.add(sequence - next);
+            next = sequence;
+        }
+
+        // Wait up to timeoutNanos for an event. Spectators poll in short
+        // naps so the producer never has anyone to wake.
+        boolean await(long timeoutNanos) {
+            long deadline = System.nanoTime() + timeoutNanos;
+            while (next > published) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0 || Thread.currentThread().isInterrupted()) {
+                    return false;
+                }
+                LockSupport.parkNanos(Math.min(left, 2_000_000L));
+            }
+            return true;
+        }
+
+        // Events skipped since the last call
+        long takeDropped() {
+            long count = dropped;
+            dropped = 0;
+            return count;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// Streams a SpectatorBus to local clients, one line per event, for lobby
+// screens and overlays. Each client has its own thread and its own cursor,
+// so a client that reads slowly only falls behind itself: when its cursor
+// skips ahead it is told how many events it missed and gets the whole board
+// again, and it carries on from there.
+//
+// On connect, and after a skip, a client is sent the current board:
+//   BOARD <rows> <cols> <seed> <seconds>
+//   STATE <pairs> <pairs total> <seconds left> <misses> PLAYING|WON|LOST
+//   MATCHED <cell> ...                  (when any pairs are found)
+//   FACEUP <cell> <candy>               (for each unmatched card face up)
+// then one line per event:
+//   NEW_GAME <rows> <cols> <seed> <seconds>
+//   RESTORE <rows> <cols> <seed> <seconds>  (a saved game resumed; followed by the board)
+//   CLICK <cell> <candy>
+//   MATCH <cell> <candy> <pairs>
+//   MISMATCH <cell> <candy> <misses>
+//   FLIP_BACK <cell>                    (the last pair turned back over)
+//   TICK <seconds left>
+//   WIN <cell> <candy> <seconds left>
+//   TIME_UP <pairs>
+//   DROPPED <events>                    (followed by the board)
+final class SpectatorRelay implements Closeable {
+    static final int DEFAULT_PORT = 7646;
+    private static final long IDLE_NANOS = 250_000_000L;
+
+    private final SpectatorBus bus;
+    private final Supplier<BoardState> board;
+    private final ServerSocket serverSocket;
+    private final ExecutorService clients;
+    private final Thread acceptor;
+    private volatile boolean running = true;
+
+    // board supplies the latest published state, e.g. GameLogic::latest
+    SpectatorRelay(SpectatorBus bus, Supplier<BoardState> board, int port) throws IOException {
+        this.bus = bus;
+        this.board = board;
+        this.serverSocket = new ServerSocket(port, 64, InetAddress.getLoopbackAddress());
+        this.clients = VirtualThreads.newPerTaskExecutor("candy-spectator");
+        this.acceptor = new Thread(this::acceptLoop, "candy-spectator-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int getPort() { return serverSocket.getLocalPort(); }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                clients.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (running) {
+                    System.out.println("Error accepting spectator: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        // Subscribe before taking the board: an event may then come twice, but none goes missing
+        SpectatorBus.Cursor cursor = bus.subscribe();
+        SpectatorBus.Event event = new SpectatorBus.Event();
+        StringBuilder line = new StringBuilder(64);
+        try (Socket s = socket;
+             Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.US_ASCII))) {
+            writeBoard(out, board.get(), line);
+            out.flush();
+            while (running) {
+                if (!cursor.poll(event)) {
+                    out.flush();
+                    cursor.await(IDLE_NANOS);
+                    continue;
+                }
+                long dropped = cursor.takeDropped();
+                if (dropped > 0) {
+                    out.write("DROPPED " + dropped + "\n");
+                    writeBoard(out, board.get(), line);
+                }
+                writeEvent(out, event, line);
+                if (event.type == GameEventListener.RESTORE) {
+                    writeBoard(out, restoredBoard(event), line);
+                }
+            }
+        } catch (IOException e) {
+            // Spectator went away
+        }
+    }
+
+    // The board is published just after the engine event, so wait briefly
+    // for the one showing the restored game rather than send the old game's
+    private BoardState restoredBoard(SpectatorBus.Event event) {
+        long deadline = System.nanoTime() + IDLE_NANOS;
+        BoardState state = board.get();
+        while ((state.getSeed() != event.seed || state.getPairsFound() < event.pairsFound)
+            && deadline - System.nanoTime() > 0) {
+            LockSupport.parkNanos(1_000_000L);
+            state = board.get();
+        }
+        return state;
+    }
+
+    private static void writeBoard(Writer out, BoardState state, StringBuilder line) throws IOException {
+        line.setLength(0);
+        line.append("BOARD ").append(state.getRows()).append(' ').append(state.getCols()).append(' ')
+            .append(Long.toHexString(state.getSeed())).append(' ').append(state.getDuration()).append('\n')
+            .append("STATE ").append(state.getPairsFound()).append(' ').append(state.getPairCount()).append(' ')
+            .append(state.getTimeRemaining()).append(' ').append(state.getMisses()).append(' ')
+            .append(state.isWon() ? "WON" : state.isOver() ? "LOST" : "PLAYING").append('\n');
+        out.append(line);
+        if (state.getPairsFound() > 0) {
+            line.setLength(0);
+            line.append("MATCHED");
+            for (int cell = 0; cell < state.getCardCount(); cell++) {
+                if (state.isMatched(cell)) {
+                    line.append(' ').append(cell);
+                }
+            }
+            out.append(line).append('\n');
+        }
+        for (int cell : new int[] {state.getFirstSelected(), state.getSecondSelected()}) {
+            if (cell != -1) {
+                out.write("FACEUP " + cell + " " + state.getCandy(cell) + "\n");
+            }
+        }
+    }
+
+    private static void writeEvent(Writer out, SpectatorBus.Event event, StringBuilder line) throws IOException {
+        line.setLength(0);
+        switch (event.type) {
+            case GameEventListener.NEW_GAME:
+            case GameEventListener.RESTORE:
+                line.append(event.type == GameEventListener.NEW_GAME ? "NEW_GAME " : "RESTORE ")
+                    .append(event.rows).append(' ').append(event.cols).append(' ')
+                    .append(Long.toHexString(event.seed)).append(' ').append(event.duration);
+                break;
+            case GameEventListener.CLICK:
+                line.append("CLICK ").append(event.cell).append(' ').append(event.candy);
+                break;
+            case GameEventListener.MATCH:
+                line.append("MATCH ").append(event.cell).append(' ').append(event.candy).append(' ')
+                    .append(event.pairsFound);
+                break;
+            case GameEventListener.MISMATCH:
+                line.append("MISMATCH ").append(event.cell).append(' ').append(event.candy).append(' ')
+                    .append(event.misses);
+                break;
+            case GameEventListener.FLIP_BACK:
+                line.append("FLIP_BACK ").append(event.cell);
+                break;
+            case GameEventListener.TICK:
+                line.append("TICK ").append(event.timeRemaining);
+                break;
+            case GameEventListener.WIN:
+                line.append("WIN ").append(event.cell).append(' ').append(event.candy).append(' ')
+                    .append(event.timeRemaining);
+                break;
+            case GameEventListener.TIME_UP:
+                line.append("TIME_UP ").append(event.pairsFound);
+                break;
+            default:
+                return;
+        }
+        out.append(line).append('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        clients.shutdownNow();
+    }
+
+    // --spectate [port]: print the events of the game being played on this machine
+    static void main(String[] args) throws IOException {
+        int port = args.length >= 1 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             BufferedReader in = new BufferedReader(
+                 new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                System.out.println(line);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+
+// Startup timeline: JVM start to main, to the first painted frame, and to the
+// point where sounds and candy images are loaded and the game is fully
+// interactive. The summary is printed once, and appended as a CSV row to the
+// file named by -Dcandy.startupLog so it can be tracked across releases
+// (label rows with -Dcandy.release).
+final class StartupMetrics {
+    private static long mainMillis = -1;
+    private static long firstFrameMillis = -1;
+    private static long interactiveMillis = -1;
+    private static boolean reported;
+
+    private StartupMetrics() {
+    }
+
+    static synchronized void mainStarted() {
+        if (mainMillis < 0) {
+            mainMillis = uptimeMillis();
+        }
+    }
+
+    static synchronized void firstFrame() {
+        if (firstFrameMillis < 0) {
+            firstFrameMillis = uptimeMillis();
+            reportIfComplete();
+        }
+    }
+
+    static synchronized void interactive() {
+        if (interactiveMillis < 0) {
+            interactiveMillis = uptimeMillis();
+            reportIfComplete();
+        }
+    }
+
+    static synchronized long getFirstFrameMillis() { return firstFrameMillis; }
+    static synchronized long getInteractiveMillis() { return interactiveMillis; }
+
+    // Milliseconds since the JVM started
+    private static long uptimeMillis() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+
+    private static void reportIfComplete() {
+        if (reported || firstFrameMillis < 0 || interactiveMillis < 0) {
+            return;
+        }
+        reported = true;
+        System.out.println(String.format("Startup: main %d ms, first frame %d ms, interactive %d ms",
+            mainMillis, firstFrameMillis, interactiveMillis));
+
+        String log = System.getProperty("candy.startupLog");
+        if (log == null) {
+            return;
+        }
+        try (PrintWriter out = new PrintWriter(new FileWriter(log, true))) {
+            out.println(String.format("%d,%s,%d,%d,%d", System.currentTimeMillis(),
+                System.getProperty("candy.release", "dev"), mainMillis, firstFrameMillis, interactiveMillis));
+        } catch (IOException e) {
+            System.out.println("Error writing startup log: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,716 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+// Every finished game, kept on disk as an append-only log with an in-memory
+// index for the leaderboards and per-player totals.
+//
+// record() updates the index and encodes the game into a buffer under a short
+// lock; a background thread writes the buffer to the log, like ReplayLog, so
+// the EDT never waits on disk. Each log record is framed by its length and a
+// CRC32C, so a torn write at the end of the file is detected and cut off on
+// the next open.
+//
+// The index holds one row of totals per player, the best few games per
+// player, and the top games per board size (rows, cols, time limit). Every
+// so often the writer saves the index to a snapshot file that records how
+// far into the log it goes, so opening a store with tens of millions of
+// games reads the snapshot and replays only the log tail instead of every
+// record since the first game. Only the index is snapshotted: the log itself
+// is never compacted and keeps every game, so it can always rebuild the
+// index on its own.
+//
+// Log:      "CMST", version, then records of
+//           length (1 byte), type byte, body, CRC32C of type and body (4 bytes)
+//   PLAYER  id, name length, UTF-8 name
+//   GAME    player id, wall clock millis, seed, rows, cols, time limit,
+//           won, seconds left, pairs found, misses
+// Snapshot: "CMSS", version, log offset, players with their totals and best
+//           games, boards with their top games, CRC32C of everything before it
+final class StatsStore implements Closeable {
+    static final int LOG_MAGIC = 0x434D5354; // "CMST"
+    static final int SNAPSHOT_MAGIC = 0x434D5353; // "CMSS"
+    static final int VERSION = 1;
+
+    static final int LEADERBOARD_SIZE = 100;
+    static final int PLAYER_BEST_SIZE = 10;
+
+    private static final int RECORD_PLAYER = 1;
+    private static final int RECORD_GAME = 2;
+    private static final int MAX_NAME_CHARS = 24;
+    private static final int MAX_NAME_BYTES = 4 * MAX_NAME_CHARS;
+    private static final int MAX_RECORD_BYTES = 128;
+    private static final int HEADER_BYTES = 5;
+
+    private static final int BUFFER_BYTES = 256 * 1024;
+    private static final long FLUSH_MILLIS = 250;
+    private static final int SNAPSHOT_EVERY = 250_000;
+
+    // One finished game
+    static final class Game {
+        final String player;
+        final long wallClockMillis;
+        final long seed;
+        final int rows;
+        final int cols;
+        final int duration;
+        final boolean won;
+        final int secondsLeft;
+        final int pairsFound;
+        final int misses;
+
+        Game(String player, long wallClockMillis, long seed, int rows, int cols, int duration,
+             boolean won, int secondsLeft, int pairsFound, int misses) {
+            // Long names are cut so they always fit in a log record
+            this.player = player.length() > MAX_NAME_CHARS ? player.substring(0, MAX_NAME_CHARS) : player;
+            this.wallClockMillis = wallClockMillis;
+            this.seed = seed;
+            this.rows = rows;
+            this.cols = cols;
+            this.duration = duration;
+            this.won = won;
+            this.secondsLeft = secondsLeft;
+            this.pairsFound = pairsFound;
+            this.misses = misses;
+        }
+
+        // Higher is better: wins first, then more pairs, more time left and fewer misses
+        long score() {
+            return (won ? 1L << 62 : 0)
+                | (long) Math.min(pairsFound, 0x3FFFFF) << 40
+                | (long) Math.min(Math.max(secondsLeft, 0), 0xFFFFFF) << 16
+                | (0xFFFF - Math.min(misses, 0xFFFF));
+        }
+
+        long boardKey() {
+            return StatsStore.boardKey(rows, cols, duration);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-16s %s %2d/%2d pairs, %3d s left, %3d misses, board %s",
+                player, won ? "won " : "lost", pairsFound, rows * cols / 2, secondsLeft, misses, Long.toHexString(seed));
+        }
+    }
+
+    // Totals for one player, as returned by player()
+    static final class PlayerStats {
+        final String name;
+        final long games;
+        final long wins;
+        final long misses;
+        final long secondsLeft;
+        final List<Game> best;
+
+        PlayerStats(String name, long games, long wins, long misses, long secondsLeft, List<Game> best) {
+            this.name = name;
+            this.games = games;
+            this.wins = wins;
+            this.misses = misses;
+            this.secondsLeft = secondsLeft;
+            this.best = best;
+        }
+
+        double getWinRate() { return games == 0 ? 0 : (double) wins / games; }
+        double getAverageMisses() { return games == 0 ? 0 : (double) misses / games; }
+    }
+
+    // The best games in descending score order. Ties keep the older game first.
+    private static final class TopList {
+        private final Game[] games;
+        private final long[] scores;
+        private int size;
+
+        TopList(int capacity) {
+            games = new Game[capacity];
+            scores = new long[capacity];
+        }
+
+        // Returns the game's rank (0 is best), or -1 if it did not make the list
+        int offer(Game game) {
+            long score = game.score();
+            if (size == games.length && score <= scores[size - 1]) {
+                return -1;
+            }
+            int at = size < games.length ? size : size - 1;
+            while (at > 0 && scores[at - 1] < score) {
+                at--;
+            }
+            int moved = Math.min(size, games.length - 1) - at;
+            System.arraycopy(games, at, games, at + 1, moved);
+            System.arraycopy(scores, at, scores, at + 1, moved);
+            games[at] = game;
+            scores[at] = score;
+            if (size < games.length) {
+                size++;
+            }
+            return at;
+        }
+
+        List<Game> top(int n) {
+            return new ArrayList<>(Arrays.asList(games).subList(0, Math.min(n, size)));
+        }
+    }
+
+    private final Path logPath;
+    private final Path snapshotPath;
+    private final FileChannel channel;
+    private final Object lock = new Object();
+    private final CRC32C crc = new CRC32C(); // used under lock
+    private final Thread writer;
+
+    // Index, guarded by lock
+    private final Map<String, Integer> playerIds = new HashMap<>();
+    private final List<String> playerNames = new ArrayList<>();
+    private long[] playerGames = new long[16];
+    private long[] playerWins = new long[16];
+    private long[] playerMisses = new long[16];
+    private long[] playerSecondsLeft = new long[16];
+    private TopList[] playerBest = new TopList[16];
+    private final Map<Long, TopList> leaderboards = new HashMap<>();
+    private long gameCount;
+
+    // Log writing, guarded by lock
+    private ByteBuffer active = ByteBuffer.allocate(BUFFER_BYTES);
+    private ByteBuffer writing = ByteBuffer.allocate(BUFFER_BYTES);
+    private long loggedBytes; // log size once everything handed to the writer is written
+    private long recordsSinceSnapshot;
+    private long droppedGames;
+    private boolean closed;
+    private IOException writeError;
+
+    private StatsStore(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        logPath = directory.resolve("stats.log");
+        snapshotPath = directory.resolve("stats.snapshot");
+
+        long replayFrom = HEADER_BYTES;
+        Long snapshotOffset = readSnapshot();
+        channel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        if (channel.size() < HEADER_BYTES) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(LOG_MAGIC).put((byte) VERSION).flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            if (header.getInt(0) != LOG_MAGIC || header.get(4) != VERSION) {
+                channel.close();
+                throw new IOException("Not a stats log: " + logPath);
+            }
+        }
+        if (snapshotOffset != null && snapshotOffset <= channel.size()) {
+            replayFrom = snapshotOffset;
+        } else if (snapshotOffset != null) {
+            // The log is shorter than the snapshot says; trust the log
+            resetIndex();
+        }
+
+        long end = replay(replayFrom);
+        if (end < channel.size()) {
+            System.out.println("Stats log: dropping " + (channel.size() - end) + " damaged bytes at the end");
+            channel.truncate(end);
+        }
+        channel.position(end);
+        loggedBytes = end;
+
+        writer = new Thread(this::writeLoop, "candy-stats-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    static StatsStore open(Path directory) throws IOException {
+        return new StatsStore(directory);
+    }
+
+    // Record a finished game. Updates the index at once and leaves the disk
+    // write to the background thread. Returns the game's rank on its board's
+    // leaderboard (0 is best), or -1 if it did not make it.
+    int record(Game game) {
+        synchronized (lock) {
+            if (closed) {
+                droppedGames++;
+                return -1;
+            }
+            if (active.remaining() < 2 * MAX_RECORD_BYTES) {
+                // The writer is a whole buffer behind; the index must match the log
+                droppedGames++;
+                return -1;
+            }
+            int id = playerId(game.player);
+            int rank = index(id, game);
+            writeGame(active, id, game);
+            recordsSinceSnapshot++;
+            if (active.position() > BUFFER_BYTES / 2) {
+                lock.notify();
+            }
+            return rank;
+        }
+    }
+
+    // Top games for a board size
+    List<Game> top(int rows, int cols, int duration, int n) {
+        synchronized (lock) {
+            TopList list = leaderboards.get(boardKey(rows, cols, duration));
+            return list == null ? new ArrayList<>() : list.top(n);
+        }
+    }
+
+    // Totals and best games for a player, or null if they have never played
+    PlayerStats player(String name) {
+        synchronized (lock) {
+            Integer id = playerIds.get(name);
+            if (id == null) {
+                return null;
+            }
+            return new PlayerStats(name, playerGames[id], playerWins[id], playerMisses[id],
+                playerSecondsLeft[id], playerBest[id].top(PLAYER_BEST_SIZE));
+        }
+    }
+
+    long getGameCount() {
+        synchronized (lock) {
+            return gameCount;
+        }
+    }
+
+    int getPlayerCount() {
+        synchronized (lock) {
+            return playerNames.size();
+        }
+    }
+
+    long getDroppedGames() {
+        synchronized (lock) {
+            return droppedGames;
+        }
+    }
+
+    private static long boardKey(int rows, int cols, int duration) {
+        return (long) rows << 48 | (long) cols << 32 | (duration & 0xFFFFFFFFL);
+    }
+
+    // ---- Index (all under lock) ----
+
+    // Look up or add a player; a new player's record goes into the log first
+    private int playerId(String name) {
+        Integer id = playerIds.get(name);
+        if (id != null) {
+            return id;
+        }
+        int newId = addPlayer(name);
+        writePlayer(active, newId, name);
+        return newId;
+    }
+
+    private int addPlayer(String name) {
+        int id = playerNames.size();
+        playerNames.add(name);
+        playerIds.put(name, id);
+        if (id == playerGames.length) {
+            int capacity = id * 2;
+            playerGames = Arrays.copyOf(playerGames, capacity);
+            playerWins = Arrays.copyOf(playerWins, capacity);
+            playerMisses = Arrays.copyOf(playerMisses, capacity);
+            playerSecondsLeft = Arrays.copyOf(playerSecondsLeft, capacity);
+            playerBest = Arrays.copyOf(playerBest, capacity);
+        }
+        playerBest[id] = new TopList(PLAYER_BEST_SIZE);
+        return id;
+    }
+
+    private int index(int id, Game game) {
+        gameCount++;
+        playerGames[id]++;
+        if (game.won) {
+            playerWins[id]++;
+        }
+        playerMisses[id] += game.misses;
+        playerSecondsLeft[id] += game.secondsLeft;
+        playerBest[id].offer(game);
+        return leaderboards.computeIfAbsent(game.boardKey(), k -> new TopList(LEADERBOARD_SIZE)).offer(game);
+    }
+
+    private void resetIndex() {
+        playerIds.clear();
+        playerNames.clear();
+        Arrays.fill(playerGames, 0);
+        Arrays.fill(playerWins, 0);
+        Arrays.fill(playerMisses, 0);
+        Arrays.fill(playerSecondsLeft, 0);
+        Arrays.fill(playerBest, null);
+        leaderboards.clear();
+        gameCount = 0;
+    }
+
+    // ---- Log records ----
+
+    private void writePlayer(ByteBuffer out, int id, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int start = beginRecord(out, RECORD_PLAYER);
+        ReplayLog.putVarint(out, id);
+        ReplayLog.putVarint(out, bytes.length);
+        out.put(bytes);
+        endRecord(out, start);
+    }
+
+    private void writeGame(ByteBuffer out, int id, Game game) {
+        int start = beginRecord(out, RECORD_GAME);
+        putGame(out, id, game);
+        endRecord(out, start);
+    }
+
+    private static void putGame(ByteBuffer out, int id, Game game) {
+        ReplayLog.putVarint(out, id);
+        out.putLong(game.wallClockMillis);
+        out.putLong(game.seed);
+        ReplayLog.putVarint(out, game.rows);
+        ReplayLog.putVarint(out, game.cols);
+        ReplayLog.putVarint(out, game.duration);
+        out.put((byte) (game.won ? 1 : 0));
+        ReplayLog.putVarint(out, Math.max(0, game.secondsLeft));
+        ReplayLog.putVarint(out, game.pairsFound);
+        ReplayLog.putVarint(out, game.misses);
+    }
+
+    private Game getGame(ByteBuffer in) throws IOException {
+        int id = (int) getVarint(in);
+        if (id < 0 || id >= playerNames.size()) {
+            throw new IOException("Unknown player " + id);
+        }
+        return new Game(playerNames.get(id), in.getLong(), in.getLong(), (int) getVarint(in), (int) getVarint(in),
+            (int) getVarint(in), in.get() != 0, (int) getVarint(in), (int) getVarint(in), (int) getVarint(in));
+    }
+
+    // Records are length-prefixed with one varint byte, since they are all short
+    private static int beginRecord(ByteBuffer out, int type) {
+        out.put((byte) 0);
+        int start = out.position();
+        out.put((byte) type);
+        return start;
+    }
+
+    private void endRecord(ByteBuffer out, int start) {
+        int length = out.position() - start;
+        out.put(start - 1, (byte) length);
+        crc.reset();
+        crc.update(out.array(), out.arrayOffset() + start, length);
+        out.putInt((int) crc.getValue());
+    }
+
+    // Replay log records from an offset into the index. Returns the offset
+    // just past the last intact record.
+    private long replay(long from) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        buffer.flip();
+        long bufferOffset = from; // file offset of buffer index 0
+        long good = from;
+        boolean endOfFile = false;
+        CRC32C check = new CRC32C();
+        while (true) {
+            if (buffer.remaining() < MAX_RECORD_BYTES + 5 && !endOfFile) {
+                bufferOffset += buffer.position();
+                buffer.compact();
+                endOfFile = channel.read(buffer, bufferOffset + buffer.position()) < 0;
+                buffer.flip();
+            }
+            if (!buffer.hasRemaining()) {
+                return good;
+            }
+            int start = buffer.position();
+            int length = buffer.get(start) & 0xFF;
+            if (length == 0 || length > MAX_RECORD_BYTES || buffer.remaining() < 1 + length + 4) {
+                return good;
+            }
+            check.reset();
+            check.update(buffer.array(), start + 1, length);
+            if ((int) check.getValue() != buffer.getInt(start + 1 + length)) {
+                return good;
+            }
+
+            ByteBuffer body = buffer.duplicate();
+            body.position(start + 2).limit(start + 1 + length);
+            try {
+                int type = buffer.get(start + 1);
+                if (type == RECORD_PLAYER) {
+                    int id = (int) getVarint(body);
+                    byte[] name = new byte[(int) getVarint(body)];
+                    body.get(name);
+                    if (id != playerNames.size()) {
+                        return good;
+                    }
+                    addPlayer(new String(name, StandardCharsets.UTF_8));
+                } else if (type == RECORD_GAME) {
+                    Game game = getGame(body);
+                    index(playerIds.get(game.player), game);
+                } else {
+                    return good;
+                }
+            } catch (IOException | RuntimeException e) {
+                return good;
+            }
+
+            buffer.position(start + 1 + length + 4);
+            good = bufferOffset + buffer.position();
+            // Replayed records count towards the next snapshot too
+            recordsSinceSnapshot++;
+        }
+    }
+
+    private static long getVarint(ByteBuffer in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    // ---- Snapshots ----
+
+    // Load the snapshot into the index and return the log offset it covers,
+    // or null if there is no usable snapshot
+    private Long readSnapshot() {
+        if (!Files.exists(snapshotPath)) {
+            return null;
+        }
+        try {
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(snapshotPath));
+            if (in.remaining() < 17 || in.getInt() != SNAPSHOT_MAGIC || in.get() != VERSION) {
+                return null;
+            }
+            CRC32C check = new CRC32C();
+            check.update(in.array(), 0, in.limit() - 4);
+            if ((int) check.getValue() != in.getInt(in.limit() - 4)) {
+                System.out.println("Stats snapshot is damaged; rebuilding from the log");
+                return null;
+            }
+            in.limit(in.limit() - 4);
+            long offset = in.getLong();
+
+            int players = (int) getVarint(in);
+            for (int id = 0; id < players; id++) {
+                byte[] name = new byte[(int) getVarint(in)];
+                in.get(name);
+                addPlayer(new String(name, StandardCharsets.UTF_8));
+                playerGames[id] = getVarint(in);
+                playerWins[id] = getVarint(in);
+                playerMisses[id] = getVarint(in);
+                playerSecondsLeft[id] = getVarint(in);
+                gameCount += playerGames[id];
+            }
+            for (int id = 0; id < players; id++) {
+                int best = (int) getVarint(in);
+                for (int i = 0; i < best; i++) {
+                    playerBest[id].offer(getGame(in));
+                }
+            }
+            int boards = (int) getVarint(in);
+            for (int b = 0; b < boards; b++) {
+                long key = in.getLong();
+                TopList list = new TopList(LEADERBOARD_SIZE);
+                int size = (int) getVarint(in);
+                for (int i = 0; i < size; i++) {
+                    list.offer(getGame(in));
+                }
+                leaderboards.put(key, list);
+            }
+            return offset;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Error reading stats snapshot: " + e.getMessage());
+            resetIndex();
+            return null;
+        }
+    }
+
+    // Serialise the index; called under lock, so it is consistent with logOffset
+    private ByteBuffer encodeSnapshot(long logOffset) {
+        int games = 0;
+        for (int id = 0; id < playerNames.size(); id++) {
+            games += playerBest[id].size;
+        }
+        for (TopList list : leaderboards.values()) {
+            games += list.size;
+        }
+        int capacity = 64 + playerNames.size() * (MAX_NAME_BYTES + 64) + leaderboards.size() * 16
+            + games * MAX_RECORD_BYTES;
+        ByteBuffer out = ByteBuffer.allocate(capacity);
+        out.putInt(SNAPSHOT_MAGIC).put((byte) VERSION).putLong(logOffset);
+
+        ReplayLog.putVarint(out, playerNames.size());
+        for (int id = 0; id < playerNames.size(); id++) {
+            byte[] name = playerNames.get(id).getBytes(StandardCharsets.UTF_8);
+            ReplayLog.putVarint(out, name.length);
+            out.put(name);
+            ReplayLog.putVarint(out, playerGames[id]);
+            ReplayLog.putVarint(out, playerWins[id]);
+            ReplayLog.putVarint(out, playerMisses[id]);
+            ReplayLog.putVarint(out, playerSecondsLeft[id]);
+        }
+        for (int id = 0; id < playerNames.size(); id++) {
+            TopList best = playerBest[id];
+            ReplayLog.putVarint(out, best.size);
+            for (int i = 0; i < best.size; i++) {
+                putGame(out, playerIds.get(best.games[i].player), best.games[i]);
+            }
+        }
+        ReplayLog.putVarint(out, leaderboards.size());
+        for (Map.Entry<Long, TopList> entry : leaderboards.entrySet()) {
+            TopList list = entry.getValue();
+            out.putLong(entry.getKey());
+            ReplayLog.putVarint(out, list.size);
+            for (int i = 0; i < list.size; i++) {
+                putGame(out, playerIds.get(list.games[i].player), list.games[i]);
+            }
+        }
+
+        CRC32C check = new CRC32C();
+        check.update(out.array(), 0, out.position());
+        out.putInt((int) check.getValue());
+        out.flip();
+        return out;
+    }
+
+    private void writeSnapshot(ByteBuffer snapshot) throws IOException {
+        Path temp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (snapshot.hasRemaining()) {
+                out.write(snapshot);
+            }
+            out.force(true);
+        }
+        Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // ---- Writer thread ----
+
+    private void writeLoop() {
+        while (true) {
+            ByteBuffer snapshot = null;
+            boolean finished;
+            synchronized (lock) {
+                while (active.position() == 0 && !closed) {
+                    try {
+                        lock.wait(FLUSH_MILLIS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                finished = closed;
+                ByteBuffer full = active;
+                active = writing;
+                writing = full;
+                loggedBytes += writing.position();
+                // The index now matches the log up to the end of this buffer
+                if (recordsSinceSnapshot >= SNAPSHOT_EVERY || (finished && recordsSinceSnapshot > 0)) {
+                    snapshot = encodeSnapshot(loggedBytes);
+                    recordsSinceSnapshot = 0;
+                }
+            }
+
+            try {
+                writing.flip();
+                while (writing.hasRemaining()) {
+                    channel.write(writing);
+                }
+                writing.clear();
+                if (snapshot != null) {
+                    // The log must be on disk before a snapshot that points past it
+                    channel.force(false);
+                    writeSnapshot(snapshot);
+                }
+            } catch (IOException e) {
+                synchronized (lock) {
+                    writeError = e;
+                    closed = true;
+                }
+                System.out.println("Error writing stats log: " + e.getMessage());
+                return;
+            }
+            if (finished) {
+                return;
+            }
+        }
+    }
+
+    // Write everything out, snapshot the index and close the log
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            closed = true;
+            lock.notify();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.force(false);
+        channel.close();
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+
+    // Usage: --stats [player] [rows cols seconds]
+    static void main(String[] args) throws IOException {
+        Path directory = defaultDirectory();
+        String name = args.length > 0 ? args[0] : defaultPlayer();
+        int rows = args.length > 3 ? Integer.parseInt(args[1]) : 4;
+        int cols = args.length > 3 ? Integer.parseInt(args[2]) : 4;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 40;
+
+        long start = System.nanoTime();
+        try (StatsStore store = open(directory)) {
+            System.out.println(String.format("%d games by %d players in %s (opened in %.1f ms)",
+                store.getGameCount(), store.getPlayerCount(), directory, (System.nanoTime() - start) / 1e6));
+            System.out.println();
+            System.out.println("Top 10 on " + rows + "x" + cols + " in " + seconds + " s:");
+            List<Game> top = store.top(rows, cols, seconds, 10);
+            for (int i = 0; i < top.size(); i++) {
+                System.out.println(String.format("%3d. %s", i + 1, top.get(i)));
+            }
+
+            PlayerStats player = store.player(name);
+            System.out.println();
+            if (player == null) {
+                System.out.println(name + " has not played yet");
+                return;
+            }
+            System.out.println(String.format("%s: %d games, %.1f%% won, %.1f misses per game", name,
+                player.games, player.getWinRate() * 100, player.getAverageMisses()));
+            for (Game game : player.best) {
+                System.out.println("     " + game);
+            }
+        }
+    }
+
+    // -Dcandy.statsDir, or a folder in the user's home directory
+    static Path defaultDirectory() {
+        String directory = System.getProperty("candy.statsDir");
+        return directory != null ? Path.of(directory) : Path.of(System.getProperty("user.home"), ".candy-memory-game");
+    }
+
+    // -Dcandy.player, or the login name
+    static String defaultPlayer() {
+        return System.getProperty("candy.player", System.getProperty("user.name", "player"));
+    }
+}
@@ -0,0 +1,130 @@
+// Tone synthesis for the sound effects. Oscillators are phase accumulators
+// reading from precomputed wavetables, so no Math.sin per sample, and they
+// write 16-bit interleaved samples straight into a caller supplied buffer.
+// Each tone gets a short attack and release ramp so there are no clicks at
+// tone boundaries, and the phase carries over from one tone to the next.
+final class ToneSynth {
+    static final int WAVE_SINE = 0;
+    static final int WAVE_TRIANGLE = 1;
+    static final int WAVE_SOFT_SQUARE = 2;
+
+    private static final int TABLE_BITS = 11;
+    private static final int TABLE_SIZE = 1 << TABLE_BITS;
+    private static final int FRACTION_BITS = 32 - TABLE_BITS;
+    private static final float FRACTION_SCALE = 1f / (1 << FRACTION_BITS);
+
+    private static final int ATTACK_MILLIS = 4;
+    private static final int RELEASE_MILLIS = 12;
+
+    // One extra entry per table so interpolation never wraps
+    private static final float[][] TABLES = {
+        buildTable(WAVE_SINE), buildTable(WAVE_TRIANGLE), buildTable(WAVE_SOFT_SQUARE)
+    };
+
+    private final float sampleRate;
+    private final int channels;
+
+    ToneSynth(float sampleRate, int channels) {
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+    }
+
+    int getChannels() { return channels; }
+
+    int frames(int durationMillis) {
+        return (int) (durationMillis * sampleRate / 1000);
+    }
+
+    int frames(int[] durations) {
+        int total = 0;
+        for (int duration : durations) {
+            total += frames(duration);
+        }
+        return total;
+    }
+
+    // Allocate a buffer of exactly the right size and render into it
+    short[] sequence(int wave, int[] frequencies, int[] durations, float volume) {
+        short[] samples = new short[frames(durations) * channels];
+        renderSequence(samples, 0, wave, frequencies, durations, volume);
+        return samples;
+    }
+
+    short[] beep(int wave, int frequency, int duration, float volume) {
+        short[] samples = new short[frames(duration) * channels];
+        renderBeep(samples, 0, wave, frequency, duration, volume);
+        return samples;
+    }
+
+    // Render a single tone into dest, starting at frameOffset. Returns the
+    // number of frames written. Does not allocate.
+    int renderBeep(short[] dest, int frameOffset, int wave, int frequency, int duration, float volume) {
+        int toneFrames = frames(duration);
+        renderTone(dest, frameOffset, wave, frequency, toneFrames, volume, 0);
+        return toneFrames;
+    }
+
+    // Render tones back to back into dest, starting at frameOffset. Returns
+    // the number of frames written. Does not allocate.
+    int renderSequence(short[] dest, int frameOffset, int wave, int[] frequencies, int[] durations, float volume) {
+        int frame = frameOffset;
+        int phase = 0;
+        for (int t = 0; t < frequencies.length; t++) {
+            int toneFrames = frames(durations[t]);
+            phase = renderTone(dest, frame, wave, frequencies[t], toneFrames, volume, phase);
+            frame += toneFrames;
+        }
+        return frame - frameOffset;
+    }
+
+    // Render one enveloped tone and return the oscillator phase it ended on
+    private int renderTone(short[] dest, int frameOffset, int wave, int frequency, int toneFrames,
+                           float volume, int startPhase) {
+        float[] table = TABLES[wave];
+        int increment = (int) (long) ((double) frequency / sampleRate * 4294967296.0);
+        int attack = Math.min(toneFrames / 4, frames(ATTACK_MILLIS));
+        int release = Math.min(toneFrames / 4, frames(RELEASE_MILLIS));
+        float amplitude = volume * Short.MAX_VALUE;
+
+        int phase = startPhase;
+        int index = frameOffset * channels;
+        for (int i = 0; i < toneFrames; i++) {
+            int slot = phase >>> FRACTION_BITS;
+            float fraction = (phase & ((1 << FRACTION_BITS) - 1)) * FRACTION_SCALE;
+            float value = table[slot] + (table[slot + 1] - table[slot]) * fraction;
+
+            float gain = 1f;
+            if (i < attack) {
+                gain = (float) i / attack;
+            } else if (i >= toneFrames - release) {
+                gain = (float) (toneFrames - 1 - i) / release;
+            }
+
+            short sample = (short) (value * gain * amplitude);
+            for (int c = 0; c < channels; c++) {
+                dest[index++] = sample;
+            }
+            phase += increment;
+        }
+        return phase;
+    }
+
+    private static float[] buildTable(int wave) {
+        float[] table = new float[TABLE_SIZE + 1];
+        for (int i = 0; i <= TABLE_SIZE; i++) {
+            double angle = 2.0 * Math.PI * i / TABLE_SIZE;
+            double value;
+            if (wave == WAVE_TRIANGLE) {
+                double t = (double) (i % TABLE_SIZE) / TABLE_SIZE;
+                value = t < 0.25 ? 4 * t : t < 0.75 ? 2 - 4 * t : 4 * t - 4;
+            } else if (wave == WAVE_SOFT_SQUARE) {
+                // First few odd harmonics only, so it stays band-limited
+                value = (Math.sin(angle) + Math.sin(3 * angle) / 3 + Math.sin(5 * angle) / 5) / 1.1;
+            } else {
+                value = Math.sin(angle);
+            }
+            table[i] = (float) value;
+        }
+        return table;
+    }
+}
@@ -0,0 +1,286 @@
+import javax.swing.*;
+import java.awt.*;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Many games side by side, for events where players or bots race on the same
+// board. Every board is dealt the same seed, and each has its own engine,
+// countdown and pairs counter. All of them run on one logic thread, like
+// GameLogic: clicks are commands executed there, and a single timer on the
+// tournament's GameLoop serves every board's countdown tick, flip-back and
+// bot move by sleeping until the earliest of them. After each command the
+// boards that changed publish a new BoardState, and TournamentView paints all
+// boards in one pass from those snapshots.
+//
+// Bots play the boards after the first ones: they remember every card they
+// have turned over and click at a human-like pace.
+final class Tournament {
+    static final int MAX_BOARDS = 256;
+
+    private static final long FLIP_BACK_NANOS = GameLoop.SECOND_NANOS;
+    private static final long IDLE = Long.MAX_VALUE;
+    private static final long BOT_MIN_NANOS = 350_000_000L;
+    private static final long BOT_MAX_NANOS = 800_000_000L;
+
+    private final int boardCount;
+    private final MemoryGameEngine[] engines;
+    private final AtomicReferenceArray<BoardState> states;
+    private final ExecutorService executor;
+    private final GameLoop clock;
+    private final int timer;
+    private volatile Runnable stateListener = () -> { };
+
+    // Confined to the logic thread
+    private final long[] deals;
+    private final boolean[] dirty;
+    private final long[] flipBackAt;
+    private final boolean[] bot;
+    private final long[] botNextAt;
+    // Two remembered cells per candy for each bot, -1 when not seen
+    private final int[][] botMemory;
+    private final SplittableRandom random = new SplittableRandom();
+    private long nextTickNanos = IDLE;
+
+    Tournament(int boardCount, int bots, int rows, int cols, int duration) {
+        if (boardCount <= 0 || boardCount > MAX_BOARDS) {
+            throw new IllegalArgumentException("Boards must be between 1 and " + MAX_BOARDS + ": " + boardCount);
+        }
+        this.boardCount = boardCount;
+        this.engines = new MemoryGameEngine[boardCount];
+        this.states = new AtomicReferenceArray<>(boardCount);
+        this.deals = new long[boardCount];
+        this.dirty = new boolean[boardCount];
+        this.flipBackAt = new long[boardCount];
+        this.bot = new boolean[boardCount];
+        this.botNextAt = new long[boardCount];
+        this.botMemory = new int[boardCount][];
+        int candyCount = MemoryGameEngine.candyCountFor(rows, cols, CandyMemoryGame.CANDY_COUNT);
+        for (int i = 0; i < boardCount; i++) {
+            int board = i;
+            engines[i] = new MemoryGameEngine(rows, cols, candyCount, duration);
+            engines[i].addListener((engine, type, cell) -> onGameEvent(board, type, cell));
+            states.set(i, BoardState.capture(engines[i], null, 0));
+            bot[i] = i >= boardCount - bots;
+            botMemory[i] = new int[2 * candyCount];
+            Arrays.fill(botMemory[i], -1);
+        }
+        Arrays.fill(flipBackAt, IDLE);
+        Arrays.fill(botNextAt, IDLE);
+
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "candy-tournament-logic");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY + 1);
+            return thread;
+        });
+        this.clock = new GameLoop("candy-tournament-clock", executor, "logic.queue_delay");
+        this.timer = clock.addTimer(this::onTimer);
+    }
+
+    int getBoardCount() { return boardCount; }
+    boolean isBot(int board) { return bot[board]; }
+
+    // The latest published state of a board; never null
+    BoardState state(int board) {
+        return states.get(board);
+    }
+
+    // Called on the logic thread after boards change; must only hand off
+    void setStateListener(Runnable listener) {
+        this.stateListener = listener;
+    }
+
+    // Deal seed on every board and start the clocks together
+    void newRound(long seed) {
+        executor.execute(() -> {
+            long now = System.nanoTime();
+            for (int i = 0; i < boardCount; i++) {
+                engines[i].newGame(seed);
+                flipBackAt[i] = IDLE;
+                Arrays.fill(botMemory[i], -1);
+                botNextAt[i] = bot[i] ? now + botDelay() : IDLE;
+            }
+            nextTickNanos = now + GameLoop.SECOND_NANOS;
+            publish();
+            reschedule();
+        });
+    }
+
+    void click(int board, int cell) {
+        executor.execute(() -> {
+            if (handleClick(board, cell)) {
+                publish();
+                reschedule();
+            }
+        });
+    }
+
+    void close() {
+        clock.close();
+        executor.shutdown();
+    }
+
+    private void onGameEvent(int board, int type, int cell) {
+        if (type == GameEventListener.NEW_GAME) {
+            deals[board]++;
+        } else if (type == GameEventListener.CLICK && bot[board]) {
+            remember(board, cell);
+        }
+        dirty[board] = true;
+    }
+
+    private boolean handleClick(int board, int cell) {
+        int result = engines[board].click(cell);
+        if (result == MemoryGameEngine.CLICK_MISMATCH) {
+            flipBackAt[board] = System.nanoTime() + FLIP_BACK_NANOS;
+        }
+        return result != MemoryGameEngine.CLICK_IGNORED;
+    }
+
+    // Everything that has come due: countdown ticks, flip-backs and bot moves
+    private void onTimer() {
+        long now = System.nanoTime();
+        while (nextTickNanos != IDLE && now - nextTickNanos >= 0) {
+            boolean running = false;
+            for (MemoryGameEngine engine : engines) {
+                engine.tick();
+                running |= !engine.isOver();
+            }
+            nextTickNanos = running ? nextTickNanos + GameLoop.SECOND_NANOS : IDLE;
+        }
+        for (int i = 0; i < boardCount; i++) {
+            if (flipBackAt[i] != IDLE && now - flipBackAt[i] >= 0) {
+                flipBackAt[i] = IDLE;
+                engines[i].flipBack();
+            }
+            if (botNextAt[i] != IDLE && now - botNextAt[i] >= 0) {
+                botNextAt[i] = engines[i].isOver() ? IDLE : now + botDelay();
+                int cell = engines[i].isOver() || engines[i].isAwaitingFlipBack() ? -1 : botChoice(i);
+                if (cell != -1) {
+                    handleClick(i, cell);
+                }
+            }
+        }
+        publish();
+        reschedule();
+    }
+
+    private void reschedule() {
+        long earliest = nextTickNanos;
+        for (int i = 0; i < boardCount; i++) {
+            earliest = Math.min(earliest, Math.min(flipBackAt[i], botNextAt[i]));
+        }
+        if (earliest == IDLE) {
+            clock.cancel(timer);
+        } else {
+            clock.scheduleAt(timer, earliest);
+        }
+    }
+
+    private void publish() {
+        boolean changed = false;
+        for (int i = 0; i < boardCount; i++) {
+            if (dirty[i]) {
+                dirty[i] = false;
+                states.set(i, BoardState.capture(engines[i], states.get(i), deals[i]));
+                changed = true;
+            }
+        }
+        if (changed) {
+            stateListener.run();
+        }
+    }
+
+    private long botDelay() {
+        return random.nextLong(BOT_MIN_NANOS, BOT_MAX_NANOS);
+    }
+
+    private void remember(int board, int cell) {
+        int[] memory = botMemory[board];
+        int slot = 2 * engines[board].getCandy(cell);
+        if (memory[slot] == -1 || memory[slot] == cell) {
+            memory[slot] = cell;
+        } else if (memory[slot + 1] == -1) {
+            memory[slot + 1] = cell;
+        }
+    }
+
+    // The partner of the face-up card if it has been seen, else a known pair,
+    // else a card not seen yet
+    private int botChoice(int board) {
+        MemoryGameEngine engine = engines[board];
+        int[] memory = botMemory[board];
+        int first = engine.getFirstSelected();
+        if (first != -1) {
+            int slot = 2 * engine.getCandy(first);
+            int partner = memory[slot] == first ? memory[slot + 1] : memory[slot];
+            if (partner != -1) {
+                return partner;
+            }
+        } else {
+            for (int slot = 0; slot < memory.length; slot += 2) {
+                if (memory[slot + 1] != -1 && !engine.isMatched(memory[slot])) {
+                    return memory[slot];
+                }
+            }
+        }
+        // Scan from a random start for an unseen card; fall back to any hidden one
+        int cardCount = engine.getCardCount();
+        int start = random.nextInt(cardCount);
+        int fallback = -1;
+        for (int i = 0; i < cardCount; i++) {
+            int cell = (start + i) % cardCount;
+            if (engine.isRevealed(cell)) {
+                continue;
+            }
+            int slot = 2 * engine.getCandy(cell);
+            if (memory[slot] != cell && memory[slot + 1] != cell) {
+                return cell;
+            }
+            fallback = cell;
+        }
+        return fallback;
+    }
+
+    // --tournament [boards] [bots] [rows cols] [seconds]: boards not played by
+    // bots take mouse clicks
+    static void main(String[] args) {
+        int boards = args.length >= 1 ? Integer.parseInt(args[0]) : 16;
+        int bots = args.length >= 2 ? Integer.parseInt(args[1]) : boards - 1;
+        int rows = args.length >= 4 ? Integer.parseInt(args[2]) : 4;
+        int cols = args.length >= 4 ? Integer.parseInt(args[3]) : 4;
+        int seconds = args.length >= 5 ? Integer.parseInt(args[4]) : 40;
+
+        Tournament tournament = new Tournament(boards, Math.min(bots, boards), rows, cols, seconds);
+        SwingUtilities.invokeLater(() -> {
+            JFrame frame = new JFrame("Candy Memory Tournament");
+            frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+            BackgroundPanel background = new BackgroundPanel();
+            background.setLayout(new BorderLayout());
+            frame.setContentPane(background);
+
+            TournamentView view = new TournamentView(tournament);
+            JButton newRound = new JButton("NEW ROUND");
+            newRound.addActionListener(e -> tournament.newRound(new SplittableRandom().nextLong()));
+            JPanel header = new JPanel(new FlowLayout(FlowLayout.CENTER));
+            header.setOpaque(false);
+            header.add(newRound);
+            background.add(header, BorderLayout.NORTH);
+            background.add(view, BorderLayout.CENTER);
+
+            frame.setSize(1200, 900);
+            frame.setLocationRelativeTo(null);
+            frame.setVisible(true);
+            view.loadCandyImages();
+            tournament.newRound(new SplittableRandom().nextLong());
+
+            // -Dcandy.frameStats prints the paint times on exit
+            if (Boolean.getBoolean("candy.frameStats")) {
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println(view.frameSummary())));
+            }
+        });
+    }
+}
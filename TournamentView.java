@@ -0,0 +1,283 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.geom.RoundRectangle2D;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Every board of a Tournament in one component. Boards are laid out in a
+// near-square grid, each with a header line showing who plays it, its
+// countdown and its pairs, and all of them draw their cards from one shared
+// CardSpriteCache, so 64 boards of the same size cost the sprites of one.
+//
+// The tournament's logic thread only flags that something changed. A frame
+// timer on the EDT then picks up the latest snapshots at most once per frame
+// and repaints the boards that moved, and Swing merges those into a single
+// paint pass. Painting walks only the boards and cells inside the clip, and
+// a RenderQualityGovernor turns antialiasing down if that pass runs long.
+final class TournamentView extends JComponent {
+    private static final long SPRITE_CACHE_BYTES = 32L * 1024 * 1024;
+    private static final int HEADER_HEIGHT = 20;
+    private static final int PADDING = 6;
+    private static final int MIN_CELL_SIZE = 6;
+    private static final int GAP = 3;
+    private static final Font HEADER_FONT = new Font("Segoe UI", Font.BOLD, 13);
+    private static final Color BOARD_COLOR = new Color(255, 255, 255, 90);
+    private static final Color WON_COLOR = new Color(0, 150, 0);
+    private static final LatencyHistogram PAINT_TIMES = Metrics.histogram("paint.tournament");
+
+    private final Tournament tournament;
+    private final CardSpriteCache sprites =
+        new CardSpriteCache(new Image[CandyMemoryGame.CANDY_COUNT], SPRITE_CACHE_BYTES);
+    private final RenderQualityGovernor renderQuality = new RenderQualityGovernor(GameLoop.FRAME_NANOS);
+    private final int boardCount;
+    private final int rows;
+    private final int cols;
+
+    // The snapshot each board was last painted from, and its header text
+    private final BoardState[] shown;
+    private final String[] headers;
+
+    // Layout, recomputed when the component is resized
+    private int layoutWidth = -1;
+    private int layoutHeight = -1;
+    private int gridCols;
+    private int boardWidth;
+    private int boardHeight;
+    private int cellSize;
+    // Drop the "Bot"/"Player" label when the full header would not fit a board
+    private boolean compactHeaders;
+
+    // Frame pacing: the logic thread asks, the frame timer refreshes
+    private final GameLoop frameLoop = new GameLoop("candy-tournament-frames");
+    private final int frameTimer;
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+    private volatile long lastFrameNanos;
+    private final LatencyHistogram frameIntervals = new LatencyHistogram();
+    private final LatencyHistogram framePaintTimes = new LatencyHistogram();
+
+    TournamentView(Tournament tournament) {
+        this.tournament = tournament;
+        this.boardCount = tournament.getBoardCount();
+        this.shown = new BoardState[boardCount];
+        this.headers = new String[boardCount];
+        for (int i = 0; i < boardCount; i++) {
+            shown[i] = tournament.state(i);
+            headers[i] = header(i, shown[i]);
+        }
+        this.rows = shown[0].getRows();
+        this.cols = shown[0].getCols();
+        this.frameTimer = frameLoop.addTimer(this::refresh);
+        tournament.setStateListener(this::requestRefresh);
+        sprites.setQuality(renderQuality.getLevel());
+        renderQuality.setChangeListener(() -> {
+            sprites.setQuality(renderQuality.getLevel());
+            repaint();
+        });
+        setOpaque(false);
+
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                if (!SwingUtilities.isLeftMouseButton(e)) {
+                    return;
+                }
+                updateLayout();
+                int board = boardAt(e.getX(), e.getY());
+                if (board != -1 && !tournament.isBot(board)) {
+                    int cell = cellAt(board, e.getX(), e.getY());
+                    if (cell != -1) {
+                        tournament.click(board, cell);
+                    }
+                }
+            }
+        });
+    }
+
+    // Decode the candy artwork off the EDT, then swap it in. The image pack
+    // stays open for the session and decodes the rest as boards need them.
+    void loadCandyImages() {
+        CompletableFuture.supplyAsync(CandyMemoryGame::loadCandyImages)
+            .thenAccept(images -> SwingUtilities.invokeLater(() -> {
+                sprites.setCandyImages(images);
+                repaint();
+            }));
+        CompletableFuture.supplyAsync(() -> CandyMemoryGame.openImagePack(0))
+            .thenAccept(pack -> SwingUtilities.invokeLater(() -> {
+                if (pack != null) {
+                    sprites.setImagePack(pack, this::repaint);
+                    repaint();
+                }
+            }));
+    }
+
+    // On the logic thread: at most one refresh is pending, no sooner than a frame after the last
+    private void requestRefresh() {
+        if (refreshQueued.compareAndSet(false, true)) {
+            long now = System.nanoTime();
+            frameLoop.scheduleAt(frameTimer, Math.max(now, lastFrameNanos + GameLoop.FRAME_NANOS));
+        }
+    }
+
+    // On the EDT: pick up the boards that changed since the last frame
+    private void refresh() {
+        refreshQueued.set(false);
+        long now = System.nanoTime();
+        if (lastFrameNanos != 0) {
+            frameIntervals.record(now - lastFrameNanos);
+        }
+        lastFrameNanos = now;
+        updateLayout();
+        for (int i = 0; i < boardCount; i++) {
+            BoardState state = tournament.state(i);
+            if (state != shown[i]) {
+                shown[i] = state;
+                headers[i] = header(i, state);
+                repaint(boardX(i), boardY(i), boardWidth, boardHeight);
+            }
+        }
+    }
+
+    private String header(int board, BoardState state) {
+        int seconds = state.getTimeRemaining();
+        if (compactHeaders) {
+            return String.format("%d %d:%02d %d/%d", board + 1,
+                seconds / 60, seconds % 60, state.getPairsFound(), state.getPairCount());
+        }
+        return String.format("%s %d   %d:%02d   %d/%d", tournament.isBot(board) ? "Bot" : "Player", board + 1,
+            seconds / 60, seconds % 60, state.getPairsFound(), state.getPairCount());
+    }
+
+    private void updateLayout() {
+        int width = getWidth();
+        int height = getHeight();
+        if (width == layoutWidth && height == layoutHeight) {
+            return;
+        }
+        layoutWidth = width;
+        layoutHeight = height;
+        // Pick the column count that gives the biggest cards
+        cellSize = 0;
+        gridCols = 1;
+        for (int columns = 1; columns <= boardCount; columns++) {
+            int gridRows = (boardCount + columns - 1) / columns;
+            int byWidth = (width / columns - 2 * PADDING - GAP * (cols - 1)) / cols;
+            int byHeight = (height / gridRows - HEADER_HEIGHT - 2 * PADDING - GAP * (rows - 1)) / rows;
+            int size = Math.min(byWidth, byHeight);
+            if (size > cellSize) {
+                cellSize = size;
+                gridCols = columns;
+            }
+        }
+        cellSize = Math.max(MIN_CELL_SIZE, cellSize);
+        boardWidth = 2 * PADDING + cols * cellSize + GAP * (cols - 1);
+        boardHeight = HEADER_HEIGHT + 2 * PADDING + rows * cellSize + GAP * (rows - 1);
+
+        int widest = getFontMetrics(HEADER_FONT).stringWidth(String.format("Player %d   0:00   %d/%d",
+            boardCount, rows * cols / 2, rows * cols / 2));
+        boolean compact = widest > boardWidth - 2 * PADDING;
+        if (compact != compactHeaders) {
+            compactHeaders = compact;
+            for (int i = 0; i < boardCount; i++) {
+                headers[i] = header(i, shown[i]);
+            }
+        }
+    }
+
+    private int boardX(int board) {
+        int spare = Math.max(0, layoutWidth - gridCols * boardWidth) / (gridCols + 1);
+        return spare + (board % gridCols) * (boardWidth + spare);
+    }
+
+    private int boardY(int board) {
+        int gridRows = (boardCount + gridCols - 1) / gridCols;
+        int spare = Math.max(0, layoutHeight - gridRows * boardHeight) / (gridRows + 1);
+        return spare + (board / gridCols) * (boardHeight + spare);
+    }
+
+    private int boardAt(int x, int y) {
+        for (int i = 0; i < boardCount; i++) {
+            int bx = boardX(i);
+            int by = boardY(i);
+            if (x >= bx && x < bx + boardWidth && y >= by && y < by + boardHeight) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int cellAt(int board, int x, int y) {
+        int dx = x - boardX(board) - PADDING;
+        int dy = y - boardY(board) - PADDING - HEADER_HEIGHT;
+        if (dx < 0 || dy < 0) {
+            return -1;
+        }
+        int col = dx / (cellSize + GAP);
+        int row = dy / (cellSize + GAP);
+        if (col >= cols || row >= rows || dx - col * (cellSize + GAP) >= cellSize
+            || dy - row * (cellSize + GAP) >= cellSize) {
+            return -1;
+        }
+        return row * cols + col;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        long paintStart = System.nanoTime();
+        updateLayout();
+        Graphics2D g2d = (Graphics2D) g;
+        Rectangle clip = g2d.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        renderQuality.applyHints(g2d);
+        g2d.setFont(HEADER_FONT);
+        int pitch = cellSize + GAP;
+
+        for (int i = 0; i < boardCount; i++) {
+            int bx = boardX(i);
+            int by = boardY(i);
+            if (!clip.intersects(bx, by, boardWidth, boardHeight)) {
+                continue;
+            }
+            BoardState state = shown[i];
+            g2d.setColor(BOARD_COLOR);
+            g2d.fill(new RoundRectangle2D.Float(bx, by, boardWidth, boardHeight, 12, 12));
+            g2d.setColor(state.isWon() ? WON_COLOR : state.getTimeRemaining() <= 0 ? Color.RED
+                : state.getTimeRemaining() <= 10 ? Color.RED.darker() : CandyMemoryGame.TITLE_COLOR);
+            g2d.drawString(headers[i], bx + PADDING, by + PADDING + HEADER_HEIGHT - 6);
+
+            // Only the cells inside the clip
+            int originX = bx + PADDING;
+            int originY = by + PADDING + HEADER_HEIGHT;
+            int firstCol = Math.max(0, (clip.x - originX) / pitch);
+            int firstRow = Math.max(0, (clip.y - originY) / pitch);
+            int lastCol = Math.min(cols - 1, (clip.x + clip.width - originX) / pitch);
+            int lastRow = Math.min(rows - 1, (clip.y + clip.height - originY) / pitch);
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int col = firstCol; col <= lastCol; col++) {
+                    int cell = row * cols + col;
+                    BoardComponent.paintCard(g2d, state.isRevealed(cell), state.getCandy(cell), state.getNumber(cell),
+                        sprites, originX + col * pitch, originY + row * pitch, cellSize, cellSize);
+                }
+            }
+        }
+
+        long paintNanos = System.nanoTime() - paintStart;
+        PAINT_TIMES.record(paintNanos);
+        framePaintTimes.record(paintNanos);
+        FlightEvents.paint("tournament", paintNanos);
+        renderQuality.record(paintNanos);
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(1100, 800);
+    }
+
+    String frameSummary() {
+        return String.format("Tournament frames: interval %s; paint %s; sprites %d",
+            frameIntervals.summary("ms", 1e6), framePaintTimes.summary("ms", 1e6), sprites.getSize());
+    }
+}
@@ -0,0 +1,45 @@
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Thread-per-task executors that use virtual threads when the JVM has them
+// (Java 21+) and fall back to daemon platform threads with small stacks on
+// older runtimes, so the game still builds and runs on Java 17.
+final class VirtualThreads {
+    private static final long FALLBACK_STACK_BYTES = 256 * 1024;
+
+    private VirtualThreads() {
+    }
+
+    static boolean isAvailable() {
+        return factoryMethod() != null;
+    }
+
+    static ExecutorService newPerTaskExecutor(String name) {
+        Method method = factoryMethod();
+        if (method != null) {
+            try {
+                return (ExecutorService) method.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // Fall through to platform threads
+            }
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(null, runnable, name + "-" + counter.incrementAndGet(), FALLBACK_STACK_BYTES);
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newCachedThreadPool(factory);
+    }
+
+    private static Method factoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
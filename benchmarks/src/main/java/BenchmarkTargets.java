@@ -0,0 +1,112 @@
+import candybench.GameTargets;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+
+// Default-package side of candybench.GameTargets; see that interface.
+public class BenchmarkTargets implements GameTargets {
+    private static final int GRID_SIZE = 4;
+    private static final long PERFECT_GAME_SEED = 42L;
+
+    private static final Color[] CANDY_COLORS = {
+        new Color(255, 100, 100), new Color(100, 200, 100), new Color(100, 100, 255), new Color(255, 200, 0),
+        new Color(200, 100, 200), new Color(255, 150, 0), new Color(100, 200, 200), new Color(255, 180, 180)
+    };
+
+    private final MemoryGameEngine engine =
+        new MemoryGameEngine(GRID_SIZE, GRID_SIZE, CandyMemoryGame.CANDY_COUNT, Integer.MAX_VALUE);
+    private final Image[] candyImages = new Image[CandyMemoryGame.CANDY_COUNT];
+    private final CardSpriteCache cardSprites;
+    private final ToneSynth synth = new ToneSynth(AudioEngine.SAMPLE_RATE, 2);
+
+    // Cells of the seeded board in the order perfect play clicks them
+    private final int[] perfectOrder;
+    private final int mismatchFirst;
+    private final int mismatchSecond;
+
+    public BenchmarkTargets() {
+        for (int i = 0; i < CandyMemoryGame.CANDY_COUNT; i++) {
+            candyImages[i] = CandyMemoryGame.createCandyImage(CANDY_COLORS[i]);
+        }
+        cardSprites = new CardSpriteCache(candyImages, 32L * 1024 * 1024);
+
+        newGame(PERFECT_GAME_SEED);
+        int cardCount = engine.getCardCount();
+        perfectOrder = new int[cardCount];
+        boolean[] used = new boolean[cardCount];
+        int n = 0;
+        for (int i = 0; i < cardCount; i++) {
+            if (used[i]) {
+                continue;
+            }
+            for (int j = i + 1; j < cardCount; j++) {
+                if (!used[j] && engine.getCandy(j) == engine.getCandy(i)) {
+                    used[i] = true;
+                    used[j] = true;
+                    perfectOrder[n++] = i;
+                    perfectOrder[n++] = j;
+                    break;
+                }
+            }
+        }
+
+        int second = 1;
+        while (engine.getCandy(second) == engine.getCandy(0)) {
+            second++;
+        }
+        mismatchFirst = 0;
+        mismatchSecond = second;
+    }
+
+    @Override
+    public void newGame(long seed) {
+        engine.newGame(seed);
+    }
+
+    @Override
+    public int clickMismatch() {
+        int result = engine.click(mismatchFirst) + engine.click(mismatchSecond);
+        engine.flipBack();
+        return result;
+    }
+
+    @Override
+    public int playPerfectGame() {
+        newGame(PERFECT_GAME_SEED);
+        int result = 0;
+        for (int cell : perfectOrder) {
+            result += engine.click(cell);
+        }
+        return result;
+    }
+
+    @Override
+    public Image createCandyImage(int candy) {
+        return CandyMemoryGame.createCandyImage(CANDY_COLORS[candy % CANDY_COLORS.length]);
+    }
+
+    @Override
+    public void paintCard(Graphics2D g2d, boolean revealed, boolean cold, int width, int height) {
+        if (cold) {
+            cardSprites.clear();
+        }
+        BoardComponent.paintCard(g2d, revealed, engine.getCandy(mismatchFirst), engine.getNumber(mismatchFirst),
+            cardSprites, 0, 0, width, height);
+    }
+
+    @Override
+    public int createBeepSound(short[] dest, int frequency, int duration) {
+        return synth.renderBeep(dest, 0, ToneSynth.WAVE_SINE, frequency, duration, 0.8f);
+    }
+
+    @Override
+    public int createSequenceSound(short[] dest, int[] frequencies, int[] durations) {
+        return synth.renderSequence(dest, 0, ToneSynth.WAVE_SINE, frequencies, durations, 0.8f);
+    }
+
+    @Override
+    public Object synthesizeSoundPacks() {
+        return SoundPack.synthesizeAll(SoundPack.Theme.values(), synth);
+    }
+}
@@ -0,0 +1,38 @@
+package candybench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Sound synthesis for createBeepSound and createSequenceSound, without
+// opening an audio line.
+@State(Scope.Thread)
+public class AudioBenchmark {
+    private static final int[] WIN_FREQUENCIES = {600, 800, 1000};
+    private static final int[] WIN_DURATIONS = {150, 150, 300};
+
+    // Large enough for the longest sound: 600 ms of 44.1 kHz stereo
+    private final short[] buffer = new short[44100 * 2];
+    private GameTargets targets;
+
+    @Setup
+    public void setup() {
+        targets = GameTargets.load();
+    }
+
+    @Benchmark
+    public int createBeepSound() {
+        return targets.createBeepSound(buffer, 600, 150);
+    }
+
+    @Benchmark
+    public int createSequenceSound() {
+        return targets.createSequenceSound(buffer, WIN_FREQUENCIES, WIN_DURATIONS);
+    }
+
+    @Benchmark
+    public Object synthesizeSoundPacks() {
+        return targets.synthesizeSoundPacks();
+    }
+}
@@ -0,0 +1,34 @@
+package candybench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Click-to-match path (handleCardClick -> checkForMatch) and the board setup
+// done by startNewGame.
+@State(Scope.Thread)
+public class EngineBenchmark {
+    private GameTargets targets;
+    private long seed;
+
+    @Setup
+    public void setup() {
+        targets = GameTargets.load();
+    }
+
+    @Benchmark
+    public void newGame() {
+        targets.newGame(seed++);
+    }
+
+    @Benchmark
+    public int clickMismatchAndFlipBack() {
+        return targets.clickMismatch();
+    }
+
+    @Benchmark
+    public int playPerfectGame() {
+        return targets.playPerfectGame();
+    }
+}
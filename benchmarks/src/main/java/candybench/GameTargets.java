@@ -0,0 +1,38 @@
+package candybench;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+
+// JMH refuses benchmark classes in the default package, and the game lives
+// there, so the benchmarks reach it through this interface. The
+// implementation is the default-package BenchmarkTargets class.
+public interface GameTargets {
+
+    // Engine: deal a new board with the given seed (startNewGame)
+    void newGame(long seed);
+
+    // Engine: reveal a mismatched pair and flip it back
+    int clickMismatch();
+
+    // Engine: deal the seeded board and clear it with perfect play
+    int playPerfectGame();
+
+    // Rendering
+    Image createCandyImage(int candy);
+    // A cold paint drops the sprite cache first, so the sprite is re-rendered
+    void paintCard(Graphics2D g2d, boolean revealed, boolean cold, int width, int height);
+
+    // Audio: 16-bit stereo tones rendered into a reusable buffer, and every
+    // themed sound pack synthesized in parallel
+    int createBeepSound(short[] dest, int frequency, int duration);
+    int createSequenceSound(short[] dest, int[] frequencies, int[] durations);
+    Object synthesizeSoundPacks();
+
+    static GameTargets load() {
+        try {
+            return (GameTargets) Class.forName("BenchmarkTargets").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Game classes are not on the benchmark classpath", e);
+        }
+    }
+}
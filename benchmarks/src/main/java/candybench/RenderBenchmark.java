@@ -0,0 +1,60 @@
+package candybench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+
+// createCandyImage and the card paintComponent override, rendered into an
+// offscreen BufferedImage. The cold variant includes rebuilding the sprite.
+@State(Scope.Thread)
+public class RenderBenchmark {
+    @Param({"100"})
+    public int cardSize;
+
+    private GameTargets targets;
+    private BufferedImage target;
+    private Graphics2D g2d;
+    private int candy;
+
+    @Setup
+    public void setup() {
+        targets = GameTargets.load();
+        target = new BufferedImage(cardSize, cardSize, BufferedImage.TYPE_INT_ARGB);
+        g2d = target.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        g2d.dispose();
+    }
+
+    @Benchmark
+    public Image createCandyImage() {
+        return targets.createCandyImage(candy++ & 7);
+    }
+
+    @Benchmark
+    public BufferedImage paintCardBack() {
+        targets.paintCard(g2d, false, false, cardSize, cardSize);
+        return target;
+    }
+
+    @Benchmark
+    public BufferedImage paintCardFace() {
+        targets.paintCard(g2d, true, false, cardSize, cardSize);
+        return target;
+    }
+
+    @Benchmark
+    public BufferedImage paintCardBackCold() {
+        targets.paintCard(g2d, false, true, cardSize, cardSize);
+        return target;
+    }
+}
@@ -0,0 +1,238 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Updating the analytics after each session has to come to the same totals
+// as reading the finished logs in one pass
+class GameAnalyticsTest {
+    private static final int ROWS = 4;
+    private static final int COLS = 4;
+    private static final int CANDIES = 8;
+    private static final int SECONDS = 60;
+
+    @TempDir
+    Path dir;
+
+    private interface Play {
+        void run(MemoryGameEngine engine) throws IOException;
+    }
+
+    // One run of the game appending to log
+    private static void session(Path log, MemoryGameEngine engine, Play play) throws IOException {
+        try (ReplayLog replayLog = ReplayLog.open(log)) {
+            engine.addListener(replayLog);
+            try {
+                play.run(engine);
+            } finally {
+                engine.removeListener(replayLog);
+            }
+        }
+    }
+
+    private static MemoryGameEngine engine() {
+        return new MemoryGameEngine(ROWS, COLS, CANDIES, SECONDS);
+    }
+
+    private static String report(GameAnalytics analytics) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        analytics.report(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String fullPass(List<Path> logs) {
+        GameAnalytics analytics = new GameAnalytics();
+        analytics.update(logs);
+        return report(analytics);
+    }
+
+    // Through the checkpoint file, as separate runs of --analytics would
+    private long updateAndSave(Path checkpoint, List<Path> logs) throws IOException {
+        GameAnalytics analytics = GameAnalytics.load(checkpoint);
+        long games = analytics.update(logs);
+        analytics.save(checkpoint);
+        return games;
+    }
+
+    @Test
+    void gameInProgressIsReadAgainOnceItEnds() throws IOException {
+        Path log = dir.resolve("games.cmr");
+        Path checkpoint = dir.resolve("analytics.bin");
+        MemoryGameEngine engine = engine();
+
+        session(log, engine, game -> {
+            game.newGame(1);
+            for (int candy = 0; candy < CANDIES; candy++) {
+                matchPair(game, candy);
+            }
+            game.newGame(2);
+            missWith(game, 3);
+            game.flipBack();
+            matchPair(game, 0);
+        });
+        assertEquals(1, updateAndSave(checkpoint, List.of(log)));
+
+        // The same game carries on in the next session
+        session(log, engine, game -> {
+            game.tick();
+            missWith(game, 5);
+            game.flipBack();
+            for (int candy = 1; candy < CANDIES; candy++) {
+                matchPair(game, candy);
+            }
+            game.newGame(3);
+            matchPair(game, 2);
+            for (int second = 0; second < SECONDS; second++) {
+                game.tick();
+            }
+        });
+        assertEquals(2, updateAndSave(checkpoint, List.of(log)));
+        assertEquals(0, updateAndSave(checkpoint, List.of(log)));
+
+        String report = report(GameAnalytics.load(checkpoint));
+        assertEquals(fullPass(List.of(log)), report);
+        assertTrue(report.contains("3 games, 66.7% won, 33.3% lost, 0.0% abandoned, 0.7 misses per game"), report);
+    }
+
+    // A RESTORE of the game in progress carries it on; a RESTORE of some other
+    // game abandons the one in progress and starts over from the snapshot
+    @Test
+    void restoreCarriesOnOrAbandonsAcrossUpdates() throws IOException {
+        Path log = dir.resolve("games.cmr");
+        Path checkpoint = dir.resolve("analytics.bin");
+        ByteBuffer saved = ByteBuffer.allocate(4096);
+        ByteBuffer other = ByteBuffer.allocate(4096);
+
+        // A game of seed 8 is played part way in a separate log, for a
+        // snapshot this log has never seen the start of
+        MemoryGameEngine elsewhere = engine();
+        elsewhere.newGame(8);
+        matchPair(elsewhere, 4);
+        new GameSnapshot().write(elsewhere, other);
+        other.flip();
+
+        session(log, engine(), game -> {
+            game.newGame(7);
+            matchPair(game, 0);
+            missWith(game, 1);
+            game.flipBack();
+            new GameSnapshot().write(game, saved);
+        });
+        saved.flip();
+        assertEquals(0, updateAndSave(checkpoint, List.of(log)));
+
+        session(log, engine(), game -> {
+            assertTrue(GameSnapshot.read(saved, game));
+            for (int candy = 1; candy < CANDIES; candy++) {
+                matchPair(game, candy);
+            }
+            game.newGame(9);
+            matchPair(game, 3);
+        });
+        assertEquals(1, updateAndSave(checkpoint, List.of(log)));
+
+        session(log, engine(), game -> {
+            assertTrue(GameSnapshot.read(other, game));
+            for (int candy = 0; candy < CANDIES; candy++) {
+                if (candy != 4) {
+                    matchPair(game, candy);
+                }
+            }
+        });
+        assertEquals(2, updateAndSave(checkpoint, List.of(log)));
+
+        String report = report(GameAnalytics.load(checkpoint));
+        assertEquals(fullPass(List.of(log)), report);
+        // Seeds 7 and 8 won, seed 9 abandoned by the restore of seed 8
+        assertTrue(report.contains("3 games, 66.7% won, 0.0% lost, 33.3% abandoned, 0.3 misses per game"), report);
+    }
+
+    @Test
+    void logShorterThanTheCheckpointIsReadFromTheStart() throws IOException {
+        Path log = dir.resolve("games.cmr");
+        Path checkpoint = dir.resolve("analytics.bin");
+        session(log, engine(), game -> {
+            for (long seed = 1; seed <= 3; seed++) {
+                game.newGame(seed);
+                for (int candy = 0; candy < CANDIES; candy++) {
+                    matchPair(game, candy);
+                }
+            }
+        });
+        assertEquals(3, updateAndSave(checkpoint, List.of(log)));
+
+        // Replaced by a new log with a single game
+        Files.delete(log);
+        session(log, engine(), game -> {
+            game.newGame(4);
+            for (int candy = 0; candy < CANDIES; candy++) {
+                matchPair(game, candy);
+            }
+        });
+        assertEquals(1, updateAndSave(checkpoint, List.of(log)));
+        assertEquals(0, updateAndSave(checkpoint, List.of(log)));
+    }
+
+    @Test
+    void checkpointRoundTripsAndADamagedOneStartsOver() throws IOException {
+        Path log = dir.resolve("games.cmr");
+        Path checkpoint = dir.resolve("analytics.bin");
+        session(log, engine(), game -> {
+            game.newGame(1);
+            missWith(game, 2);
+            game.flipBack();
+            for (int candy = 0; candy < CANDIES; candy++) {
+                matchPair(game, candy);
+            }
+        });
+        assertEquals(1, updateAndSave(checkpoint, List.of(log)));
+        String report = fullPass(List.of(log));
+        assertEquals(report, report(GameAnalytics.load(checkpoint)));
+
+        try (FileChannel channel = FileChannel.open(checkpoint, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, 20);
+            one.put(0, (byte) (one.get(0) ^ 1)).position(0);
+            channel.write(one, 20);
+        }
+        GameAnalytics damaged = GameAnalytics.load(checkpoint);
+        assertTrue(report(damaged).startsWith("0 games"), report(damaged));
+        // Starting over reads the whole log again, once
+        assertEquals(1, damaged.update(List.of(log)));
+        assertEquals(report, report(damaged));
+    }
+
+    private static void matchPair(MemoryGameEngine engine, int candy) {
+        int found = 0;
+        for (int cell = 0; cell < engine.getCardCount() && found < 2; cell++) {
+            if (engine.getCandy(cell) == candy && !engine.isMatched(cell)) {
+                engine.click(cell);
+                found++;
+            }
+        }
+    }
+
+    private static void missWith(MemoryGameEngine engine, int candy) {
+        int cell = 0;
+        while (engine.getCandy(cell) != candy || engine.isMatched(cell)) {
+            cell++;
+        }
+        int other = 0;
+        while (engine.getCandy(other) == candy || engine.isMatched(other)) {
+            other++;
+        }
+        engine.click(cell);
+        engine.click(other);
+    }
+}
@@ -0,0 +1,174 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.junit.jupiter.api.Test;
+
+class GameLogicTest {
+    private static final long SEED = 0x5EEDL;
+    // Long enough that only a click can flip the pair back
+    private static final long FLIP_BACK_NANOS = 60 * GameLoop.SECOND_NANOS;
+
+    // The last engine event before each publication, so a countdown tick
+    // can't stand in for the publication under test
+    private final AtomicInteger lastEvent = new AtomicInteger();
+    private final BlockingQueue<Integer> published = new LinkedBlockingQueue<>();
+
+    // A click on a matched card is ignored, but in fast mode it has already
+    // flipped the mismatched pair back, and that has to be published
+    @Test
+    void fastModeClickOnMatchedCardPublishesFlipBack() throws InterruptedException {
+        GameLogic logic = new GameLogic(new MemoryGameEngine(4, 4, 8, 5), FLIP_BACK_NANOS, true,
+            () -> published.add(lastEvent.get()));
+        try {
+            logic.addListener((engine, type, cell) -> lastEvent.set(type));
+            logic.newGame(SEED);
+            awaitPublish();
+            BoardState board = logic.latest();
+
+            int first = cellOf(board, 0, -1);
+            int second = cellOf(board, 0, first);
+            logic.click(first);
+            logic.click(second);
+            awaitPublish();
+            awaitPublish();
+            assertTrue(logic.latest().isMatched(first));
+
+            int miss = cellOf(board, 1, -1);
+            int other = cellOf(board, 2, -1);
+            logic.click(miss);
+            logic.click(other);
+            awaitPublish();
+            awaitPublish();
+            assertTrue(logic.latest().isRevealed(other));
+
+            logic.click(first);
+            assertEquals(GameEventListener.FLIP_BACK, awaitPublish());
+            board = logic.latest();
+            assertFalse(board.isRevealed(miss));
+            assertFalse(board.isRevealed(other));
+            assertEquals(-1, board.getSecondSelected());
+            assertEquals(1, board.getPairsFound());
+            assertEquals(1, board.getMisses());
+        } finally {
+            logic.close();
+        }
+    }
+
+    // Clicks made while a pair waits to flip back: a repeat of a queued cell
+    // and a matched cell are dropped at once, the rest are applied in order
+    // after the flip-back, until one of them is a miss again. Clicks left
+    // waiting through that second flip-back too are more than two flip-back
+    // delays old by then, and are dropped as stale.
+    @Test
+    void clicksDuringFlipBackAreQueuedThenAppliedInOrder() throws InterruptedException {
+        long flipBackNanos = 200_000_000L;
+        LongAdder queued = Metrics.counter("input.queued");
+        LongAdder applied = Metrics.counter("input.applied");
+        LongAdder dropped = Metrics.counter("input.dropped");
+        List<Integer> clicks = new ArrayList<>();
+        AtomicInteger flipBacks = new AtomicInteger();
+        GameLogic logic = new GameLogic(new MemoryGameEngine(4, 4, 8, 60), flipBackNanos, false,
+            () -> published.add(lastEvent.get()));
+        try {
+            logic.addListener((engine, type, cell) -> {
+                lastEvent.set(type);
+                if (type == GameEventListener.CLICK) {
+                    synchronized (clicks) {
+                        clicks.add(cell);
+                    }
+                } else if (type == GameEventListener.FLIP_BACK) {
+                    flipBacks.incrementAndGet();
+                }
+            });
+            logic.newGame(SEED);
+            awaitPublish();
+            BoardState board = logic.latest();
+            // A click is counted just after it is published, so only now are the counters settled
+            long queuedBefore = queued.sum();
+            long appliedBefore = applied.sum();
+            long droppedBefore = dropped.sum();
+
+            int matched = cellOf(board, 0, -1);
+            logic.click(matched);
+            logic.click(cellOf(board, 0, matched));
+            awaitPublish();
+            awaitPublish();
+            int missA = cellOf(board, 4, -1);
+            int missB = cellOf(board, 5, -1);
+            logic.click(missA);
+            logic.click(missB);
+            awaitPublish();
+            awaitPublish();
+            assertEquals(GameEventListener.MISMATCH, lastEvent.get());
+            // Keep the first two queued clicks well inside two flip-back delays
+            Thread.sleep(flipBackNanos / 2_000_000);
+
+            // Two misses in a row, then a pair that has to wait out both of them
+            int first = cellOf(board, 1, -1);
+            int second = cellOf(board, 2, -1);
+            int third = cellOf(board, 1, first);
+            int fourth = cellOf(board, 3, -1);
+            int staleA = cellOf(board, 2, second);
+            int staleB = cellOf(board, 3, fourth);
+            logic.click(first);
+            logic.click(first);
+            logic.click(matched);
+            logic.click(second);
+            logic.click(third);
+            logic.click(fourth);
+            logic.click(staleA);
+            logic.click(staleB);
+
+            long giveUp = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (flipBacks.get() < 3 && System.nanoTime() < giveUp) {
+                Thread.sleep(10);
+            }
+            assertEquals(3, flipBacks.get());
+            // Commands run in order, so once the new deal is out the last
+            // flip-back has dealt with the queue
+            published.clear();
+            logic.newGame(SEED);
+            while (awaitPublish() != GameEventListener.NEW_GAME) {
+                // Skip the flip-back's own publication
+            }
+
+            synchronized (clicks) {
+                assertEquals(List.of(matched, cellOf(board, 0, matched), missA, missB, first, second, third, fourth),
+                    clicks);
+            }
+            assertEquals(6, queued.sum() - queuedBefore);
+            assertEquals(8, applied.sum() - appliedBefore);
+            assertEquals(4, dropped.sum() - droppedBefore);
+        } finally {
+            logic.close();
+        }
+    }
+
+    // The event behind the next publication other than a countdown tick
+    private int awaitPublish() throws InterruptedException {
+        while (true) {
+            Integer event = published.poll(5, TimeUnit.SECONDS);
+            assertTrue(event != null, "no board was published");
+            if (event != GameEventListener.TICK) {
+                return event;
+            }
+        }
+    }
+
+    private static int cellOf(BoardState board, int candy, int except) {
+        for (int cell = 0; cell < board.getCardCount(); cell++) {
+            if (board.getCandy(cell) == candy && cell != except) {
+                return cell;
+            }
+        }
+        throw new AssertionError("no candy " + candy);
+    }
+}
@@ -0,0 +1,84 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class GameLoopTest {
+    @Test
+    void timersNeverRunBeforeTheirDeadline() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        GameLoop loop = new GameLoop("test-loop", executor, "test.queue_delay");
+        AtomicLong deadline = new AtomicLong();
+        AtomicLong earliestRun = new AtomicLong(Long.MAX_VALUE);
+        AtomicInteger runs = new AtomicInteger();
+        int[] timer = new int[1];
+        timer[0] = loop.addTimer(() -> {
+            earliestRun.set(Math.min(earliestRun.get(), System.nanoTime() - deadline.get()));
+            if (runs.incrementAndGet() < 50) {
+                deadline.set(System.nanoTime() + 3_000_000L);
+                loop.scheduleAt(timer[0], deadline.get());
+            }
+        });
+        executor.execute(() -> {
+            deadline.set(System.nanoTime() + 3_000_000L);
+            loop.scheduleAt(timer[0], deadline.get());
+        });
+
+        long giveUp = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (runs.get() < 50 && System.nanoTime() < giveUp) {
+            Thread.sleep(10);
+        }
+        loop.close();
+        executor.shutdown();
+
+        assertEquals(50, runs.get());
+        assertTrue(earliestRun.get() >= 0, "ran " + -earliestRun.get() + " ns early");
+    }
+
+    // A countdown re-armed the way GameLogic's is, with another timer due
+    // just before each tick; it used to pull the tick in early and leave the
+    // countdown re-arming at the same deadline until it came due
+    @Test
+    void countdownDispatchesOncePerSecond() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        GameLoop loop = new GameLoop("test-loop", executor, "test.queue_delay");
+        long second = GameLoop.SECOND_NANOS;
+        AtomicLong nextTick = new AtomicLong();
+        AtomicInteger ticks = new AtomicInteger();
+        AtomicInteger dispatches = new AtomicInteger();
+        int[] timers = new int[2];
+        timers[0] = loop.addTimer(() -> {
+            dispatches.incrementAndGet();
+            long now = System.nanoTime();
+            while (now - nextTick.get() >= 0) {
+                ticks.incrementAndGet();
+                nextTick.addAndGet(second);
+            }
+            if (ticks.get() < 3) {
+                loop.scheduleAt(timers[0], nextTick.get());
+                loop.scheduleAt(timers[1], nextTick.get() - 1_000_000L);
+            }
+        });
+        timers[1] = loop.addTimer(() -> { });
+        executor.execute(() -> {
+            nextTick.set(System.nanoTime() + second);
+            loop.scheduleAt(timers[0], nextTick.get());
+            loop.scheduleAt(timers[1], nextTick.get() - 1_000_000L);
+        });
+
+        long giveUp = System.nanoTime() + 5 * second;
+        while (ticks.get() < 3 && System.nanoTime() < giveUp) {
+            Thread.sleep(10);
+        }
+        loop.close();
+        executor.shutdown();
+
+        assertEquals(3, ticks.get());
+        assertEquals(3, dispatches.get());
+    }
+}
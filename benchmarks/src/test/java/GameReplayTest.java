@@ -0,0 +1,102 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GameReplayTest {
+    private static final long SEED = 0x5EEDL;
+
+    @TempDir
+    Path dir;
+
+    // A game saved part way, then resumed by a second session appending to the same log
+    private Path recordResumedGame() throws IOException {
+        Path log = dir.resolve("games.cmr");
+        ByteBuffer saved = ByteBuffer.allocate(4096);
+
+        MemoryGameEngine first = new MemoryGameEngine(4, 4, 8, 60);
+        try (ReplayLog replayLog = ReplayLog.open(log)) {
+            first.addListener(replayLog);
+            first.newGame(SEED);
+            matchPair(first, 0);
+            matchPair(first, 1);
+            first.tick();
+            first.tick();
+            // A miss, so the misses must come back from the snapshot too
+            missWith(first, 2);
+            first.flipBack();
+            new GameSnapshot().write(first, saved);
+        }
+        saved.flip();
+
+        MemoryGameEngine second = new MemoryGameEngine(4, 4, 8, 60);
+        try (ReplayLog replayLog = ReplayLog.open(log)) {
+            second.addListener(replayLog);
+            assertTrue(GameSnapshot.read(saved, second));
+            assertEquals(2, second.getPairsFound());
+            for (int candy = 2; candy < 8; candy++) {
+                matchPair(second, candy);
+            }
+            assertTrue(second.isWon());
+        }
+        return log;
+    }
+
+    @Test
+    void replaysResumedGameFromItsSnapshot() throws IOException {
+        Path log = recordResumedGame();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new GameReplay(new PrintStream(bytes, true, StandardCharsets.UTF_8)).replay(log);
+        String report = bytes.toString(StandardCharsets.UTF_8);
+
+        assertTrue(report.contains("Replayed 1 games"), report);
+        assertTrue(report.contains("0 did not reproduce"), report);
+        assertTrue(report.contains("won, pairs 8/8, 58s left"), report);
+        assertTrue(report.contains(", resumed"), report);
+    }
+
+    @Test
+    void analyticsCountsResumedGameOnce() throws IOException {
+        Path log = recordResumedGame();
+
+        GameAnalytics analytics = new GameAnalytics();
+        assertEquals(1, analytics.update(List.of(log)));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        analytics.report(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        String report = bytes.toString(StandardCharsets.UTF_8);
+
+        assertTrue(report.contains("1 games, 100.0% won, 0.0% lost, 0.0% abandoned, 1.0 misses per game"), report);
+    }
+
+    private static void matchPair(MemoryGameEngine engine, int candy) {
+        int found = 0;
+        for (int cell = 0; cell < engine.getCardCount() && found < 2; cell++) {
+            if (engine.getCandy(cell) == candy) {
+                engine.click(cell);
+                found++;
+            }
+        }
+    }
+
+    private static void missWith(MemoryGameEngine engine, int candy) {
+        int cell = 0;
+        while (engine.getCandy(cell) != candy) {
+            cell++;
+        }
+        int other = 0;
+        while (engine.getCandy(other) == candy || engine.isMatched(other)) {
+            other++;
+        }
+        engine.click(cell);
+        engine.click(other);
+    }
+}
@@ -0,0 +1,117 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+class SpectatorBusTest {
+    // Rounded up to a ring of 8 records
+    private static final int CAPACITY = 5;
+
+    // Every event is a new deal whose seed is its own sequence number, so a
+    // record mixing two events shows up as a seed that disagrees
+    private final MemoryGameEngine engine = new MemoryGameEngine(4, 4, 8, 60);
+
+    private SpectatorBus bus(int capacity) {
+        SpectatorBus bus = new SpectatorBus(capacity);
+        engine.addListener(bus);
+        return bus;
+    }
+
+    private void publish(long from, long to) {
+        for (long seed = from; seed < to; seed++) {
+            engine.newGame(seed);
+        }
+    }
+
+    @Test
+    void cursorThatLapsTheRingSkipsToTheOldestRecord() {
+        SpectatorBus bus = bus(CAPACITY);
+        SpectatorBus.Cursor cursor = bus.subscribe();
+        publish(0, 20);
+
+        SpectatorBus.Event event = new SpectatorBus.Event();
+        assertTrue(cursor.poll(event));
+        assertEquals(12, event.sequence);
+        assertEquals(12, event.seed);
+        assertEquals(12, cursor.takeDropped());
+        assertEquals(0, cursor.takeDropped());
+        for (long sequence = 13; sequence < 20; sequence++) {
+            assertTrue(cursor.poll(event));
+            assertEquals(sequence, event.sequence);
+            assertEquals(sequence, event.seed);
+            assertEquals(GameEventListener.NEW_GAME, event.type);
+            assertEquals(4, event.rows);
+            assertEquals(4, event.cols);
+            assertEquals(60, event.duration);
+        }
+        assertFalse(cursor.poll(event));
+        assertEquals(0, cursor.takeDropped());
+    }
+
+    @Test
+    void cursorSubscribedMidStreamSeesOnlyLaterEvents() {
+        SpectatorBus bus = bus(CAPACITY);
+        publish(0, 5);
+        SpectatorBus.Cursor cursor = bus.subscribe();
+        SpectatorBus.Event event = new SpectatorBus.Event();
+        assertFalse(cursor.poll(event));
+
+        publish(5, 8);
+        for (long sequence = 5; sequence < 8; sequence++) {
+            assertTrue(cursor.poll(event));
+            assertEquals(sequence, event.sequence);
+            assertEquals(sequence, event.seed);
+        }
+        assertFalse(cursor.poll(event));
+        assertEquals(0, cursor.takeDropped());
+    }
+
+    // A reader racing a producer that laps it over and over: every record it
+    // returns is whole, and what it returns plus what it dropped accounts
+    // for every event in order
+    @Test
+    void readerNeverSeesATornRecord() throws InterruptedException {
+        SpectatorBus bus = bus(CAPACITY);
+        SpectatorBus.Cursor cursor = bus.subscribe();
+        long events = 500_000;
+        AtomicBoolean done = new AtomicBoolean();
+        Thread producer = new Thread(() -> {
+            publish(0, events);
+            done.set(true);
+        });
+        producer.start();
+
+        SpectatorBus.Event event = new SpectatorBus.Event();
+        long next = 0;
+        long read = 0;
+        long dropped = 0;
+        while (true) {
+            boolean finished = done.get();
+            if (!cursor.poll(event)) {
+                if (finished) {
+                    break;
+                }
+                Thread.onSpinWait();
+                continue;
+            }
+            long skipped = cursor.takeDropped();
+            dropped += skipped;
+            assertEquals(next + skipped, event.sequence);
+            assertEquals(event.sequence, event.seed, "torn record");
+            assertEquals(GameEventListener.NEW_GAME, event.type);
+            assertEquals(-1, event.cell);
+            assertEquals(4, event.rows);
+            assertEquals(4, event.cols);
+            assertEquals(60, event.duration);
+            next = event.sequence + 1;
+            read++;
+        }
+        producer.join();
+
+        assertEquals(events, next);
+        assertEquals(events, read + dropped);
+        assertTrue(read > 0);
+    }
+}
@@ -0,0 +1,171 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StatsStoreTest {
+    @TempDir
+    Path dir;
+
+    private Path log() {
+        return dir.resolve("stats.log");
+    }
+
+    private Path snapshot() {
+        return dir.resolve("stats.snapshot");
+    }
+
+    // A game on the 4x4, 40 second board; the seed tells games apart
+    private static StatsStore.Game game(String player, long seed, boolean won, int secondsLeft, int pairs,
+                                        int misses) {
+        return new StatsStore.Game(player, 1_000 + seed, seed, 4, 4, 40, won, secondsLeft, pairs, misses);
+    }
+
+    private long recordGames(long firstSeed, int count) throws IOException {
+        try (StatsStore store = StatsStore.open(dir)) {
+            for (int i = 0; i < count; i++) {
+                store.record(game(i % 2 == 0 ? "ada" : "bob", firstSeed + i, i % 3 == 0, i, 8, i));
+            }
+        }
+        return Files.size(log());
+    }
+
+    private static List<Long> seeds(List<StatsStore.Game> games) {
+        List<Long> seeds = new ArrayList<>();
+        for (StatsStore.Game game : games) {
+            seeds.add(game.seed);
+        }
+        return seeds;
+    }
+
+    private void overwrite(Path path, long offset, byte... bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), offset);
+        }
+    }
+
+    @Test
+    void tornRecordAtTheEndIsCutOff() throws IOException {
+        long size = recordGames(0, 3);
+        // The first bytes of a game record whose write never finished
+        try (FileChannel channel = FileChannel.open(log(), StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {40, 2, 0, 0, 0}));
+        }
+
+        try (StatsStore store = StatsStore.open(dir)) {
+            assertEquals(3, store.getGameCount());
+            assertEquals(size, Files.size(log()));
+            store.record(game("ada", 100, true, 30, 8, 0));
+        }
+        try (StatsStore store = StatsStore.open(dir)) {
+            assertEquals(4, store.getGameCount());
+            assertEquals(100, store.top(4, 4, 40, 1).get(0).seed);
+        }
+    }
+
+    @Test
+    void corruptLastRecordIsCutOff() throws IOException {
+        long intact = recordGames(0, 2);
+        long size = recordGames(2, 1);
+        Files.delete(snapshot());
+        // Damage the last record's CRC
+        overwrite(log(), size - 1, (byte) 0x5A);
+
+        try (StatsStore store = StatsStore.open(dir)) {
+            assertEquals(2, store.getGameCount());
+            assertEquals(intact, Files.size(log()));
+        }
+    }
+
+    // Only the log after the snapshot's offset is read: damage before it
+    // goes unnoticed, and the games after it are still counted
+    @Test
+    void opensFromTheSnapshotAndReplaysOnlyTheTail() throws IOException {
+        long covered = recordGames(0, 3);
+        Path older = dir.resolve("older.snapshot");
+        Files.copy(snapshot(), older);
+        long size = recordGames(3, 2);
+        Files.move(older, snapshot(), StandardCopyOption.REPLACE_EXISTING);
+        // Inside the first record, just past the 5-byte header
+        overwrite(log(), 7, (byte) 0x7F);
+
+        try (StatsStore store = StatsStore.open(dir)) {
+            assertEquals(5, store.getGameCount());
+            assertEquals(2, store.getPlayerCount());
+            assertEquals(size, Files.size(log()));
+            assertEquals(3, store.player("ada").games);
+            assertEquals(2, store.player("bob").games);
+        }
+        assertTrue(covered < size);
+    }
+
+    // A log cut back to before the snapshot's offset, e.g. restored from a
+    // backup: the snapshot counts games that are gone, so the log is replayed
+    @Test
+    void snapshotPastTheLogEndFallsBackToAFullReplay() throws IOException {
+        long covered = recordGames(0, 3);
+        recordGames(3, 2);
+        try (FileChannel channel = FileChannel.open(log(), StandardOpenOption.WRITE)) {
+            channel.truncate(covered);
+        }
+
+        try (StatsStore store = StatsStore.open(dir)) {
+            assertEquals(3, store.getGameCount());
+            assertEquals(2, store.player("ada").games);
+            assertEquals(1, store.player("bob").games);
+            List<Long> seeds = seeds(store.top(4, 4, 40, 10));
+            seeds.sort(null);
+            assertEquals(List.of(0L, 1L, 2L), seeds);
+        }
+    }
+
+    // Wins first, then more pairs, more time left and fewer misses; equal
+    // games keep the older one first, and an equal game does not push the
+    // last one off a full list
+    @Test
+    void leaderboardsOrderGamesAndKeepTheOlderOfEqualGames() throws IOException {
+        try (StatsStore store = StatsStore.open(dir)) {
+            assertEquals(0, store.record(game("ada", 1, false, 0, 6, 2)));
+            assertEquals(0, store.record(game("ada", 2, true, 10, 8, 5)));
+            assertEquals(1, store.record(game("ada", 3, false, 0, 7, 9)));
+            assertEquals(0, store.record(game("ada", 4, true, 12, 8, 5)));
+            assertEquals(1, store.record(game("ada", 5, true, 10, 8, 3)));
+            // Equal to seed 5, so it goes after it
+            assertEquals(2, store.record(game("bob", 6, true, 10, 8, 3)));
+            assertEquals(List.of(4L, 5L, 6L, 2L, 3L, 1L), seeds(store.top(4, 4, 40, 10)));
+            assertEquals(List.of(4L, 5L), seeds(store.top(4, 4, 40, 2)));
+            assertEquals(List.of(4L, 5L, 2L, 3L, 1L), seeds(store.player("ada").best));
+            assertEquals(0, store.top(4, 4, 60, 10).size());
+            assertNull(store.player("cy"));
+
+            for (int i = 0; i < StatsStore.PLAYER_BEST_SIZE; i++) {
+                store.record(game("cy", 100 + i, false, 0, 1, 0));
+            }
+            // Full, and no better than the last
+            StatsStore.PlayerStats cy = store.player("cy");
+            assertEquals(StatsStore.PLAYER_BEST_SIZE, cy.best.size());
+            store.record(game("cy", 200, false, 0, 1, 0));
+            assertEquals(seeds(cy.best), seeds(store.player("cy").best));
+            store.record(game("cy", 201, false, 0, 2, 0));
+            assertEquals(201L, store.player("cy").best.get(0).seed);
+            assertEquals(StatsStore.PLAYER_BEST_SIZE, store.player("cy").best.size());
+            assertEquals(108L, store.player("cy").best.get(StatsStore.PLAYER_BEST_SIZE - 1).seed);
+        }
+
+        // Reopened from the snapshot, the order is the same
+        try (StatsStore store = StatsStore.open(dir)) {
+            assertEquals(List.of(4L, 5L, 6L, 2L, 3L, 1L), seeds(store.top(4, 4, 40, 6)));
+        }
+    }
+}